@@ -0,0 +1,435 @@
+package analyzer;
+
+import data.Movie;
+import data.RaterBitsets;
+import data.RatingMatrix;
+import data.Reviewer;
+import graph.BitMatrixGraph;
+import graph.GraphAlgorithms;
+import graph.GraphIfc;
+import graph.HyperAnf;
+import graph.Ifub;
+import graph.IntGraph;
+import graph.MappedGraph;
+import graph.MultiSourceBfs;
+import graph.PathStatistics;
+import similarity.Distances;
+import similarity.ItemSimilarity;
+import similarity.Measure;
+import util.DataLoader;
+import util.GraphCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AnalyzerTesting {
+    public static void main(String[] args){
+        DataLoader loader = new DataLoader();
+        loader.loadData("src/ml-latest-small/movies.csv", "src/ml-latest-small/ratings.csv");
+        Map<Integer, Movie> movies = loader.getMovies();
+        Map<Integer, Reviewer> users = loader.getReviewers();
+        RatingMatrix ratings = loader.getRatingMatrix();
+
+        long start = System.nanoTime();
+        GraphIfc<Integer> expected = MovieLensAnalyzer.makeUnweightedMovieGraph1(movies, users);
+        long mid = System.nanoTime();
+        GraphIfc<Integer> actual = CoOccurrence.sameRatingGraph(ratings, 12);
+        long end = System.nanoTime();
+        System.out.println("Option 1: " + sameEdges(expected, actual) + " (" + (mid - start) / 1000000 + " ms vs " + (end - mid) / 1000000 + " ms)");
+
+        start = System.nanoTime();
+        expected = MovieLensAnalyzer.makeUnweightedMovieGraph2(movies, users);
+        mid = System.nanoTime();
+        actual = CoOccurrence.coViewerGraph(ratings, 12);
+        end = System.nanoTime();
+        System.out.println("Option 2: " + sameEdges(expected, actual) + " (" + (mid - start) / 1000000 + " ms vs " + (end - mid) / 1000000 + " ms)");
+
+        start = System.nanoTime();
+        boolean same = Arrays.equals(CoOccurrence.coViewerCounts(ratings), CoOccurrence.bitsetCounts(RaterBitsets.of(ratings)));
+        mid = System.nanoTime();
+        same &= Arrays.equals(CoOccurrence.sameRatingCounts(ratings), CoOccurrence.bitsetCounts(RaterBitsets.byRating(ratings)));
+        end = System.nanoTime();
+        System.out.println("Bitset counts: " + same + " (" + (mid - start) / 1000000 + " ms co-viewers, " + (end - mid) / 1000000 + " ms same rating)");
+
+        start = System.nanoTime();
+        PairCounts sameRating = PairCounts.sameRating(ratings);
+        PairCounts coViewers = PairCounts.coViewers(ratings);
+        mid = System.nanoTime();
+        int[] thresholds = {1, 2, 5, 12, 20, 50, 100};
+        String sweeps = sameRating.sweep(thresholds) + coViewers.sweep(thresholds);
+        end = System.nanoTime();
+        GraphIfc<Integer> option1 = sameRating.graph(12, true);
+        int[] degrees = sameRating.degreeTable(thresholds)[3];
+        boolean table = true;
+        for(int v = 0; v < degrees.length; v++){
+            table &= degrees[v] == option1.degree(v);
+        }
+        // Both paths go through the same conversion, so they give the same representation too
+        GraphIfc<Integer> menuOption1 = CoOccurrence.sameRatingGraph(ratings, 12), menuOption2 = CoOccurrence.coViewerGraph(ratings, 12);
+        GraphIfc<Integer> option2 = coViewers.graph(12, false);
+        System.out.println("Pair counts: " + (sameEdges(menuOption1, option1) && sameEdges(menuOption2, option2) && table
+                && menuOption1.getClass() == option1.getClass() && menuOption2.getClass() == option2.getClass())
+                + " (" + (mid - start) / 1000000 + " ms counts, " + (end - mid) / 1000000 + " ms for two sweeps, compact "
+                + sameRating.isCompact() + "/" + coViewers.isCompact() + ")");
+        System.out.print(sweeps);
+
+        start = System.nanoTime();
+        expected = MovieLensAnalyzer.makeUnweightedMovieGraph3(movies, users);
+        mid = System.nanoTime();
+        actual = GenreGraph.build(movies);
+        end = System.nanoTime();
+        System.out.println("Option 3: " + sameEdges(expected, actual) + " as " + actual.getClass().getSimpleName()
+                + " (" + (mid - start) / 1000000 + " ms vs " + (end - mid) / 1000000 + " ms)");
+        if(actual instanceof BitMatrixGraph){
+            int[][] paths = GraphAlgorithms.floydWarshall(expected);
+            boolean bfs = true;
+            for(int source = 0; source < movies.size(); source += 100){
+                int[] dist = ((BitMatrixGraph) actual).bfs(source);
+                for(int v = 0; v < dist.length; v++){
+                    bfs &= dist[v] == (paths[source][v] == Integer.MAX_VALUE ? -1 : paths[source][v]);
+                }
+            }
+            System.out.println("Bitset BFS: " + bfs);
+        }
+
+        boolean statistics = true;
+        long fwTime = 0, bfsTime = 0;
+        for(GraphIfc<Integer> g : List.of(option1, CoOccurrence.coViewerGraph(ratings, 12), actual)){
+            start = System.nanoTime();
+            String fw = floydWarshallStatistics(g);
+            mid = System.nanoTime();
+            PathStatistics paths = PathStatistics.of(g);
+            end = System.nanoTime();
+            statistics &= fw.equals(paths.diameter() + " " + paths.start() + " " + paths.end() + " " + paths.averagePathLength());
+            fwTime += mid - start;
+            bfsTime += end - mid;
+        }
+        System.out.println("BFS path statistics: " + statistics + " (" + fwTime / 1000000 + " ms vs " + bfsTime / 1000000 + " ms)");
+
+        // iFUB settles the sparse Option 1 graph in a few searches; the directed co-viewer
+        // graph and the clustered genre graph fall back to the all-pairs search
+        boolean diameters = true;
+        long allPairsTime = 0, ifubTime = 0;
+        for(GraphIfc<Integer> g : List.of(option1, CoOccurrence.coViewerGraph(ratings, 12), actual)){
+            start = System.nanoTime();
+            PathStatistics paths = PathStatistics.of(g);
+            mid = System.nanoTime();
+            int[] path = Ifub.longestShortestPath(g);
+            end = System.nanoTime();
+            diameters &= Arrays.equals(new int[]{paths.diameter(), paths.start(), paths.end()}, path);
+            allPairsTime += mid - start;
+            ifubTime += end - mid;
+        }
+        System.out.println("iFUB diameter: " + diameters + " (" + allPairsTime / 1000000 + " ms vs " + ifubTime / 1000000 + " ms)");
+
+        // Multi-source BFS against one search per source, on the CSR and bit-matrix forms of
+        // a sparse and a dense graph, reported as searches per second
+        for(GraphIfc<Integer> g : List.of(option1, actual)){
+            IntGraph csr = IntGraph.copyOf(g);
+            PathStatistics reference = PathStatistics.bySource(csr);
+            StringBuilder line = new StringBuilder(String.format("MS-BFS on %d edges:", g.numEdges()));
+            boolean exact = true;
+            for(int width : new int[]{0, 1, 4, 16}){
+                for(GraphIfc<Integer> form : List.of(csr, g)){
+                    PathStatistics result = width == 0 ? PathStatistics.bySource(form) : new MultiSourceBfs(width).statistics(form); // warm up
+                    start = System.nanoTime();
+                    for(int rep = 0; rep < 3; rep++){
+                        result = width == 0 ? PathStatistics.bySource(form) : new MultiSourceBfs(width).statistics(form);
+                    }
+                    end = System.nanoTime();
+                    exact &= result.totalLength() == reference.totalLength() && result.numPaths() == reference.numPaths()
+                            && result.diameter() == reference.diameter() && result.start() == reference.start() && result.end() == reference.end();
+                    line.append(String.format(" %s %s %.0f/s,", width == 0 ? "per-source" : "x" + width,
+                            form instanceof IntGraph ? "csr" : "bits", 3e9 * form.numVertices() / (end - start)));
+                }
+            }
+            System.out.println(line.append(" ").append(exact));
+        }
+
+        // HyperANF estimates against the exact distance distribution, which should lie within
+        // three error bars
+        GraphIfc<Integer> knn = new KnnGraphBuilder(2, true).build(new WeightedBuilder(movies, ratings));
+        for(GraphIfc<Integer> g : List.of(option1, CoOccurrence.coViewerGraph(ratings, 12), actual, knn)){
+            double[] pairs = exactNeighbourhoodFunction(g);
+            double exactAverage = HyperAnf.averagePathLength(pairs);
+            double exactEffective = HyperAnf.effectiveDiameter(pairs, HyperAnf.EFFECTIVE_FRACTION);
+            start = System.nanoTime();
+            HyperAnf.Estimate estimate = new HyperAnf().estimate(g);
+            end = System.nanoTime();
+            double[] approx = estimate.reachablePairs();
+            double pairsError = Math.abs(approx[approx.length - 1] / pairs[pairs.length - 1] - 1);
+            boolean within = Math.abs(estimate.averagePathLength() - exactAverage) <= 3 * estimate.averagePathLengthError()
+                    && Math.abs(estimate.effectiveDiameter() - exactEffective) <= 3 * estimate.effectiveDiameterError()
+                    && pairsError <= 3 * estimate.reachablePairsError();
+            System.out.println(String.format("HyperANF: avg. %.4f +- %.4f (exact %.4f), eff. diameter %.3f +- %.3f (exact %.3f), "
+                            + "pairs off by %.2f%%, %d rounds (diameter %d), %s (%d ms)",
+                    estimate.averagePathLength(), estimate.averagePathLengthError(), exactAverage,
+                    estimate.effectiveDiameter(), estimate.effectiveDiameterError(), exactEffective,
+                    100 * pairsError, estimate.rounds(), pairs.length - 1, within, (end - start) / 1000000));
+        }
+
+        // A cached graph comes back in the representation the builders chose, with the same
+        // edges and weights
+        try {
+            File directory = File.createTempFile("graphs", "");
+            directory.delete();
+            GraphCache cache = new GraphCache(directory.getPath(), GraphCache.DEFAULT_MAX_BYTES);
+            boolean cached = true;
+            for(GraphIfc<Integer> g : List.of(option1, knn)){
+                cache.store("test", g);
+                GraphIfc<Integer> loaded = cache.load("test");
+                cached &= loaded.getClass() == g.getClass() && sameEdges(g, loaded) && sameWeights(g, loaded);
+            }
+            System.out.println("Graph cache: " + cached);
+            for(File f : directory.listFiles()){
+                f.delete();
+            }
+            directory.delete();
+        } catch (IOException e) {
+            System.out.println("Graph cache failed: " + e);
+        }
+
+        start = System.nanoTime();
+        expected = MovieLensAnalyzer.makeWeightedMovieGraph(movies, users);
+        mid = System.nanoTime();
+        actual = new WeightedBuilder(movies, ratings).build();
+        end = System.nanoTime();
+        System.out.println("Option 4: " + (sameEdges(expected, actual) && sameWeights(expected, actual)) + " (" + (mid - start) / 1000000 + " ms vs " + (end - mid) / 1000000 + " ms)");
+        start = System.nanoTime();
+        int[][] hashed = GraphAlgorithms.floydWarshall(expected);
+        mid = System.nanoTime();
+        int[][] dense = GraphAlgorithms.floydWarshall(actual);
+        end = System.nanoTime();
+        System.out.println("Dense Floyd-Warshall: " + Arrays.deepEquals(hashed, dense) + " (" + (mid - start) / 1000000 + " ms vs " + (end - mid) / 1000000 + " ms)");
+        start = System.nanoTime();
+        actual = new WeightedBuilder(movies, ratings).buildSymmetric();
+        end = System.nanoTime();
+        System.out.println("Option 4 triangular: " + (sameEdges(expected, actual) && sameWeights(expected, actual)) + " (" + (end - start) / 1000000 + " ms)");
+        try {
+            File file = File.createTempFile("option4", ".mapped");
+            start = System.nanoTime();
+            MappedGraph mapped = new WeightedBuilder(movies, ratings).buildMapped(file.getPath());
+            end = System.nanoTime();
+            System.out.println("Option 4 mapped: " + (sameEdges(expected, mapped) && sameWeights(expected, mapped)) + " (" + (end - start) / 1000000 + " ms)");
+            start = System.nanoTime();
+            String fw = floydWarshallStatistics(expected);
+            mid = System.nanoTime();
+            PathStatistics paths = PathStatistics.of(mapped);
+            end = System.nanoTime();
+            System.out.println("Mapped Dijkstra statistics: " + fw.equals(paths.diameter() + " " + paths.start() + " " + paths.end() + " " + paths.averagePathLength())
+                    + " (" + (mid - start) / 1000000 + " ms vs " + (end - mid) / 1000000 + " ms)");
+            MappedGraph.write(file.getPath(), option1);
+            System.out.println("Option 1 mapped: " + sameEdges(option1, MappedGraph.open(file.getPath())));
+            file.delete();
+        } catch (IOException e) {
+            System.out.println("Mapped graph failed: " + e);
+        }
+
+        WeightedBuilder distances = new WeightedBuilder(movies, ratings);
+        int[][] nearest = new KnnGraphBuilder(5, false).nearest(distances);
+        System.out.println("5 nearest neighbours: " + sameNearest(distances, nearest, 5));
+
+        start = System.nanoTime();
+        ItemSimilarity similarity = new ItemSimilarity(ratings);
+        mid = System.nanoTime();
+        Measure[] measures = Measure.values();
+        double[][] rows = new double[measures.length][movies.size()];
+        Map<Integer, Double> userMeans = new HashMap<>();
+        for(Reviewer user : users.values()){
+            userMeans.put(user.getReviewerId(), mean(user.getRatings()));
+        }
+        double error = 0;
+        for(int i = 0; i < movies.size(); i += 50){
+            similarity.similarityRow(i, measures, rows);
+            for(int j = 0; j < movies.size(); j++){
+                if(j == i){
+                    continue;
+                }
+                double[] pair = similarity.similarities(i, j, measures);
+                for(int m = 0; m < measures.length; m++){
+                    double naive = naiveSimilarity(movies, users, userMeans, measures[m], i + 1, j + 1);
+                    error = Math.max(error, Math.max(Math.abs(rows[m][j] - naive), Math.abs(pair[m] - naive)));
+                }
+            }
+        }
+        end = System.nanoTime();
+        System.out.println("Similarities: max error " + error + " (" + (mid - start) / 1000000 + " ms precompute, " + (end - mid) / 1000000 + " ms check)");
+
+        // LSH only proposes candidates, so report recall against the exhaustive builders
+        GraphIfc<Integer> exhaustive = CoOccurrence.coViewerGraph(ratings, 12);
+        for(int[] config : new int[][]{{64, 2}, {32, 3}, {20, 4}}){
+            start = System.nanoTime();
+            MinHashLsh lsh = new MinHashLsh(movies, config[0], config[1], 42);
+            actual = lsh.coViewerGraph(ratings, 12);
+            mid = System.nanoTime();
+            int[][] approximate = lsh.nearest(distances, 5);
+            end = System.nanoTime();
+            System.out.println("LSH " + config[0] + "x" + config[1] + ": " + lsh.numCandidates() + " candidates, Option 2 recall "
+                    + ((double)actual.numEdges() / exhaustive.numEdges()) + " (" + (mid - start) / 1000000 + " ms), 5-NN recall "
+                    + recall(nearest, approximate) + " (" + (end - mid) / 1000000 + " ms)");
+        }
+    }
+
+    /**
+     * Counts the pairs within each distance off the Floyd-Warshall matrix
+     * @return pairs[t] = the number of ordered pairs at distance at most t, up to the diameter
+     */
+    static double[] exactNeighbourhoodFunction(GraphIfc<Integer> g){
+        int[][] paths = GraphAlgorithms.floydWarshall(g);
+        double[] pairs = new double[1];
+        for(int[] row : paths){
+            for(int d : row){
+                if(d != Integer.MAX_VALUE){
+                    if(d >= pairs.length){
+                        pairs = Arrays.copyOf(pairs, d + 1);
+                    }
+                    pairs[d]++;
+                }
+            }
+        }
+        for(int t = 1; t < pairs.length; t++){
+            pairs[t] += pairs[t - 1];
+        }
+        return pairs;
+    }
+
+    /**
+     * Reads the diameter, its end points and the average path length off the Floyd-Warshall
+     * matrix the way the analyzer originally did
+     */
+    static String floydWarshallStatistics(GraphIfc<Integer> g){
+        int[][] paths = GraphAlgorithms.floydWarshall(g);
+        int longest = 0, first = -1, last = -1;
+        double total = 0, count = 0;
+        for(int i = 0; i < paths.length; i++){
+            for(int j = 0; j < paths[i].length; j++){
+                if(paths[i][j] != Integer.MAX_VALUE){
+                    total += paths[i][j];
+                    count += 1;
+                    if(paths[i][j] > longest){
+                        longest = paths[i][j];
+                        first = i;
+                        last = j;
+                    }
+                }
+            }
+        }
+        return longest + " " + first + " " + last + " " + total / count;
+    }
+
+    /**
+     * Returns true if both graphs have the same vertices, edges and edge count
+     */
+    static boolean sameEdges(GraphIfc<Integer> expected, GraphIfc<Integer> actual){
+        if(expected.numVertices() != actual.numVertices() || expected.numEdges() != actual.numEdges()){
+            return false;
+        }
+        for(int v : expected.getVertices()){
+            if(!actual.containsVertex(v) || expected.degree(v) != actual.degree(v)){
+                return false;
+            }
+            for(int u : expected.getNeighbors(v)){
+                if(!actual.edgeExists(v, u)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if nearest holds the k closest vertices of every row, checked by sorting
+     * each row, with ties going to the lower vertex
+     */
+    static boolean sameNearest(Distances distances, int[][] nearest, int k){
+        int n = distances.size();
+        for(int i = 0; i < n; i++){
+            Integer[] order = new Integer[n - 1];
+            for(int j = 0, next = 0; j < n; j++){
+                if(j != i){
+                    order[next++] = j;
+                }
+            }
+            final int row = i;
+            Arrays.sort(order, Comparator.comparingDouble((Integer j) -> distances.distance(row, j)).thenComparingInt(j -> j));
+            if(nearest[i].length != Math.min(k, n - 1)){
+                return false;
+            }
+            for(int j = 0; j < nearest[i].length; j++){
+                if(nearest[i][j] != order[j]){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes a similarity straight from the rating maps, recomputing the movie means and norms
+     */
+    static double naiveSimilarity(Map<Integer, Movie> movies, Map<Integer, Reviewer> users, Map<Integer, Double> userMeans, Measure measure, int u, int v){
+        double dot = 0, uSquares = 0, vSquares = 0;
+        double uMean = mean(movies.get(u).getRatings());
+        double vMean = mean(movies.get(v).getRatings());
+        for(Reviewer user : users.values()){
+            double userMean = userMeans.get(user.getReviewerId());
+            double a = 0, b = 0;
+            if(user.ratedMovie(u)){
+                a = user.getMovieRating(u) - (measure == Measure.PEARSON ? uMean : measure == Measure.ADJUSTED_COSINE ? userMean : 0);
+            }
+            if(user.ratedMovie(v)){
+                b = user.getMovieRating(v) - (measure == Measure.PEARSON ? vMean : measure == Measure.ADJUSTED_COSINE ? userMean : 0);
+            }
+            dot += a * b;
+            uSquares += a * a;
+            vSquares += b * b;
+        }
+        return uSquares == 0 || vSquares == 0 ? 0 : dot / (Math.sqrt(uSquares) * Math.sqrt(vSquares));
+    }
+
+    private static double mean(Map<Integer, Double> ratings){
+        double sum = 0;
+        for(double r : ratings.values()){
+            sum += r;
+        }
+        return ratings.isEmpty() ? 0 : sum / ratings.size();
+    }
+
+    /**
+     * Returns the fraction of the expected neighbours that were found
+     */
+    static double recall(int[][] expected, int[][] actual){
+        int found = 0, total = 0;
+        for(int i = 0; i < expected.length; i++){
+            for(int j : expected[i]){
+                total++;
+                for(int a : actual[i]){
+                    if(a == j){
+                        found++;
+                        break;
+                    }
+                }
+            }
+        }
+        return (double)found / total;
+    }
+
+    /**
+     * Returns true if every edge of expected has exactly the same weight in actual
+     */
+    static boolean sameWeights(GraphIfc<Integer> expected, GraphIfc<Integer> actual){
+        for(int v : expected.getVertices()){
+            for(int u : expected.getNeighbors(v)){
+                if(Double.doubleToLongBits(expected.getEdgeWeight(v, u)) != Double.doubleToLongBits(actual.getEdgeWeight(v, u))){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
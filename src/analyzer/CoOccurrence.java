@@ -0,0 +1,413 @@
+package analyzer;
+
+import data.RaterBitsets;
+import data.RatingMatrix;
+import graph.BitMatrixGraph;
+import graph.ConcurrentGraphBuilder;
+import graph.GraphIfc;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Builds co-occurrence counts between movies by walking each reviewer's list of rated
+ * movies once, instead of testing every user for every pair of movies. Building the counts
+ * costs O(sum of d_u^2) where d_u is the number of movies rated by user u.
+ *
+ * Pair counts are kept in a triangular array over vertex indices 0...M-1 (movie id - 1):
+ * the count for vertices i &lt; j is stored at {@link #pairIndex(int, int, int)}.
+ *
+ * Same-rating counts are built in parallel by rows of the pair array, so the workers share
+ * one array: every user's ratings are first sorted into posting lists by rating, and the
+ * worker that owns movie i scans the rest of i's posting list in each of its raters' lists.
+ *
+ * The counts can also be taken from {@link RaterBitsets}, where every pair costs U/64
+ * popcounts no matter how many ratings the movies have. That wins when the movies are
+ * rated by a large share of the users.
+ */
+public class CoOccurrence {
+
+	/**
+	 * Counts, for every pair of movies, the number of users who rated both
+	 *
+	 * @param ratings The rating matrix
+	 * @return The triangular array of pair counts
+	 */
+	public static int[] coViewerCounts(RatingMatrix ratings){
+		int n = ratings.numMovies();
+		int[] counts = new int[numPairs(n)];
+		int[] offsets = ratings.rowOffsets();
+		int[] rated = ratings.rowMovies();
+		for(int row = 0; row < ratings.numUsers(); row++){
+			int end = offsets[row + 1];
+			// Each row is sorted by movie id, so a always precedes b
+			for(int a = offsets[row]; a < end; a++){
+				int i = rated[a] - 1;
+				int base = rowBase(i, n);
+				for(int b = a + 1; b < end; b++){
+					counts[base + rated[b] - 1]++;
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Counts, for every pair of movies, the number of users who gave both the same rating.
+	 * Each user's ratings are grouped into one posting list of movies per rating value,
+	 * and only pairs inside a posting list are counted.
+	 *
+	 * @param ratings The rating matrix
+	 * @return The triangular array of pair counts
+	 */
+	public static int[] sameRatingCounts(RatingMatrix ratings){
+		return sameRatingCounts(ratings, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Counts same-rating pairs on the given pool
+	 *
+	 * @param ratings The rating matrix
+	 * @param pool The pool that counts the users
+	 * @return The triangular array of pair counts
+	 */
+	public static int[] sameRatingCounts(RatingMatrix ratings, ForkJoinPool pool){
+		int n = ratings.numMovies();
+		int[] counts = new int[numPairs(n)];
+		long[] postings = new long[ratings.numRatings()];
+		int grain = Math.max(1, ratings.numUsers() / (pool.getParallelism() * 8));
+		pool.invoke(new PostingTask(ratings, postings, 0, ratings.numUsers(), grain));
+		grain = Math.max(1, n / (pool.getParallelism() * 8));
+		pool.invoke(new SameRatingTask(ratings, postings, counts, 0, n, grain));
+		return counts;
+	}
+
+	/**
+	 * Constructs a graph in which there is an edge between movies u and v if at least
+	 * threshold users gave both the same rating. Edges are added in both directions,
+	 * like the original Option 1 builder.
+	 *
+	 * @param ratings The rating matrix
+	 * @param threshold The minimum number of users who agree on the rating
+	 * @return returns a graph of movies
+	 */
+	public static GraphIfc<Integer> sameRatingGraph(RatingMatrix ratings, int threshold){
+		return graphFromCounts(sameRatingCounts(ratings), ratings.numMovies(), threshold, true);
+	}
+
+	/**
+	 * Constructs a graph in which there is an edge between movies u and v if at least
+	 * threshold users watched both. Like the original Option 2 builder, each edge is
+	 * added once, from the lower to the higher vertex.
+	 *
+	 * @param ratings The rating matrix
+	 * @param threshold The minimum number of shared viewers
+	 * @return returns a graph of movies
+	 */
+	public static GraphIfc<Integer> coViewerGraph(RatingMatrix ratings, int threshold){
+		return graphFromCounts(coViewerCounts(ratings), ratings.numMovies(), threshold, false);
+	}
+
+	/**
+	 * Counts, for every pair of movies, the users the movies share in each layer of
+	 * bitsets, summed over the layers. Rows of the pair array are filled in parallel.
+	 *
+	 * @param layers One or more sets of rater bitsets over the same movies and users
+	 * @return The triangular array of pair counts
+	 */
+	public static int[] bitsetCounts(RaterBitsets... layers){
+		int n = layers[0].numMovies();
+		int[] counts = new int[numPairs(n)];
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		int grain = Math.max(1, n / (pool.getParallelism() * 8));
+		pool.invoke(new BitsetRowTask(layers, counts, 0, n, grain));
+		return counts;
+	}
+
+	/**
+	 * Constructs the Option 2 graph from shared-viewer counts taken from rater bitsets
+	 *
+	 * @param raters The bitsets of every movie's raters
+	 * @param threshold The minimum number of shared viewers
+	 * @return returns a graph of movies
+	 */
+	public static GraphIfc<Integer> coViewerGraph(RaterBitsets raters, int threshold){
+		return graphFromCounts(bitsetCounts(raters), raters.numMovies(), threshold, false);
+	}
+
+	/**
+	 * Constructs the Option 1 graph from same-rating counts taken from rater bitsets
+	 *
+	 * @param layers The rater bitsets of every rating value, see {@link RaterBitsets#byRating}
+	 * @param threshold The minimum number of users who agree on the rating
+	 * @return returns a graph of movies
+	 */
+	public static GraphIfc<Integer> sameRatingGraph(RaterBitsets[] layers, int threshold){
+		return graphFromCounts(bitsetCounts(layers), layers[0].numMovies(), threshold, true);
+	}
+
+	/**
+	 * Returns the number of unordered pairs of n vertices
+	 */
+	public static int numPairs(int n){
+		long pairs = (long)n * (n - 1) / 2;
+		if(pairs > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Too many movies for a pair count array: " + n);
+		}
+		return (int)pairs;
+	}
+
+	/**
+	 * Returns the position of the pair (i, j) in a triangular pair array
+	 *
+	 * @param i A vertex, with i &lt; j
+	 * @param j A vertex, with i &lt; j
+	 * @param n The number of vertices
+	 * @return The index of the pair
+	 */
+	public static int pairIndex(int i, int j, int n){
+		return rowBase(i, n) + j;
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	/**
+	 * Returns the offset that, added to j, gives the index of the pair (i, j)
+	 */
+	static int rowBase(int i, int n){
+		return (int)((long)i * (2L * n - i - 1) / 2) - i - 1;
+	}
+
+	/**
+	 * Returns the posting key of a rating: sorting by it groups a user's movies by rating,
+	 * each group in increasing movie order. Ratings are non-negative, so their bits sort
+	 * like their values.
+	 */
+	private static long postingKey(float rating, int movieId){
+		return ((long)Float.floatToIntBits(rating) << 32) | movieId;
+	}
+
+	/**
+	 * Sorts the ratings of a range of users into posting lists, in place of their rows
+	 */
+	private static class PostingTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final RatingMatrix ratings;
+		private final long[] postings;
+		private final int from, to, grain;
+
+		PostingTask(RatingMatrix ratings, long[] postings, int from, int to, int grain){
+			this.ratings = ratings;
+			this.postings = postings;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > grain){
+				int mid = (from + to) >>> 1;
+				invokeAll(new PostingTask(ratings, postings, from, mid, grain), new PostingTask(ratings, postings, mid, to, grain));
+				return;
+			}
+			int[] offsets = ratings.rowOffsets();
+			int[] rated = ratings.rowMovies();
+			float[] values = ratings.rowRatings();
+			for(int k = offsets[from]; k < offsets[to]; k++){
+				postings[k] = postingKey(values[k], rated[k]);
+			}
+			for(int row = from; row < to; row++){
+				Arrays.sort(postings, offsets[row], offsets[row + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Counts the same-rating pairs of a range of rows. Row i holds the pairs (i, j) with
+	 * i &lt; j, which are the movies after i in the posting lists that contain i.
+	 */
+	private static class SameRatingTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final RatingMatrix ratings;
+		private final long[] postings;
+		private final int[] counts;
+		private final int from, to, grain;
+
+		SameRatingTask(RatingMatrix ratings, long[] postings, int[] counts, int from, int to, int grain){
+			this.ratings = ratings;
+			this.postings = postings;
+			this.counts = counts;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > grain){
+				int mid = (from + to) >>> 1;
+				invokeAll(new SameRatingTask(ratings, postings, counts, from, mid, grain),
+						new SameRatingTask(ratings, postings, counts, mid, to, grain));
+				return;
+			}
+			int n = ratings.numMovies();
+			int[] rowOffsets = ratings.rowOffsets();
+			int[] colOffsets = ratings.colOffsets();
+			int[] raters = ratings.colUsers();
+			float[] values = ratings.colRatings();
+			for(int i = from; i < to; i++){
+				int base = rowBase(i, n);
+				for(int c = colOffsets[i]; c < colOffsets[i + 1]; c++){
+					int row = raters[c];
+					long key = postingKey(values[c], i + 1);
+					int end = rowOffsets[row + 1];
+					int k = Arrays.binarySearch(postings, rowOffsets[row], end, key) + 1;
+					for(; k < end && (postings[k] >>> 32) == (key >>> 32); k++){
+						counts[base + (int)postings[k] - 1]++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills the rows of a range of movies from bitset intersections. Each row is a
+	 * disjoint part of the pair array, so no shards are needed.
+	 */
+	private static class BitsetRowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final RaterBitsets[] layers;
+		private final int[] counts;
+		private final int from, to, grain;
+
+		BitsetRowTask(RaterBitsets[] layers, int[] counts, int from, int to, int grain){
+			this.layers = layers;
+			this.counts = counts;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > grain){
+				int mid = (from + to) >>> 1;
+				invokeAll(new BitsetRowTask(layers, counts, from, mid, grain), new BitsetRowTask(layers, counts, mid, to, grain));
+				return;
+			}
+			int n = layers[0].numMovies();
+			for(int i = from; i < to; i++){
+				int base = rowBase(i, n);
+				for(int j = i + 1; j < n; j++){
+					int count = 0;
+					for(RaterBitsets layer : layers){
+						count += layer.intersectionCount(i, j);
+					}
+					counts[base + j] = count;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the pairs that meet the threshold and converts the counts into a graph
+	 */
+	private static GraphIfc<Integer> graphFromCounts(int[] counts, int n, int threshold, boolean symmetric){
+		long pairs = 0;
+		for(int count : counts){
+			if(count >= threshold){
+				pairs++;
+			}
+		}
+		return graphFromCounts(k -> counts[k], n, threshold, symmetric, pairs);
+	}
+
+	/**
+	 * Adds an edge i -&gt; j for every pair i &lt; j whose count meets the threshold,
+	 * and also j -&gt; i if the graph is symmetric. A dense result is stored as a bit
+	 * matrix; a sparse one is collected from the rows in parallel and frozen into an
+	 * IntGraph. Every graph built from pair counts, by the menu or by {@link PairCounts},
+	 * goes through here, so the same counts always give the same representation.
+	 *
+	 * @param count The count of the pair at a triangular index, see {@link #pairIndex}
+	 * @param n The number of movies
+	 * @param threshold The minimum count
+	 * @param symmetric If true, every edge is also added in the opposite direction
+	 * @param pairs The number of pairs whose count meets the threshold
+	 * @return returns a graph of movies
+	 */
+	static GraphIfc<Integer> graphFromCounts(IntUnaryOperator count, int n, int threshold, boolean symmetric, long pairs){
+		double density = n < 2 ? 0 : (symmetric ? 2.0 : 1.0) * pairs / ((double)n * (n - 1));
+		if(density <= BitMatrixGraph.DENSITY_THRESHOLD){
+			ConcurrentGraphBuilder builder = new ConcurrentGraphBuilder(n, false);
+			ForkJoinPool pool = ForkJoinPool.commonPool();
+			int grain = Math.max(1, n / (pool.getParallelism() * 8));
+			pool.invoke(new ThresholdRowTask(count, n, threshold, symmetric, builder, 0, n, grain));
+			return builder.build();
+		}
+		GraphIfc<Integer> g = new BitMatrixGraph(n);
+		for(int i = 0; i < n; i++){
+			int base = rowBase(i, n);
+			for(int j = i + 1; j < n; j++){
+				if(count.applyAsInt(base + j) >= threshold){
+					g.addEdge(i, j);
+					if(symmetric){
+						g.addEdge(j, i);
+					}
+				}
+			}
+		}
+		return g;
+	}
+
+	/**
+	 * Adds the edges of a range of rows whose counts meet the threshold
+	 */
+	private static class ThresholdRowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final IntUnaryOperator count;
+		private final int n, threshold;
+		private final boolean symmetric;
+		private final ConcurrentGraphBuilder builder;
+		private final int from, to, grain;
+
+		ThresholdRowTask(IntUnaryOperator count, int n, int threshold, boolean symmetric, ConcurrentGraphBuilder builder, int from, int to, int grain){
+			this.count = count;
+			this.n = n;
+			this.threshold = threshold;
+			this.symmetric = symmetric;
+			this.builder = builder;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > grain){
+				int mid = (from + to) >>> 1;
+				invokeAll(new ThresholdRowTask(count, n, threshold, symmetric, builder, from, mid, grain),
+						new ThresholdRowTask(count, n, threshold, symmetric, builder, mid, to, grain));
+				return;
+			}
+			ConcurrentGraphBuilder.Sink edges = builder.newSink();
+			for(int i = from; i < to; i++){
+				int base = rowBase(i, n);
+				for(int j = i + 1; j < n; j++){
+					if(count.applyAsInt(base + j) >= threshold){
+						edges.addEdge(i, j);
+						if(symmetric){
+							edges.addEdge(j, i);
+						}
+					}
+				}
+			}
+		}
+	}
+}
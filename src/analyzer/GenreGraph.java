@@ -0,0 +1,90 @@
+package analyzer;
+
+import data.Movie;
+import graph.BitMatrixGraph;
+import graph.GraphIfc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the Option 3 graph, in which movies u and v are adjacent if they share at least
+ * one genre. Genres are turned into bit masks once, so testing a pair is an AND of a word
+ * or two. The density of the graph is estimated from a sample of rows first and the graph
+ * representation is chosen from it with {@link BitMatrixGraph#create(int, double)}; on
+ * MovieLens about half of all pairs share a genre, so this is a bit matrix.
+ */
+public class GenreGraph {
+	private static final int SAMPLE_ROWS = 64;
+
+	/**
+	 * Constructs a graph in which if movies u and v both share at least one genre there's an edge between them
+	 *
+	 * @param movies The movies keyed by id 1...M
+	 * @return returns a graph of movies
+	 */
+	public static GraphIfc<Integer> build(Map<Integer, Movie> movies){
+		int n = movies.size();
+		long[][] masks = genreMasks(movies);
+
+		// Estimate the density from evenly spaced sample rows
+		int rows = Math.min(n, SAMPLE_ROWS);
+		long sampled = 0, adjacent = 0;
+		for(int s = 0; s < rows; s++){
+			int i = (int)((long)s * n / rows);
+			for(int j = 0; j < n; j++){
+				if(j != i){
+					sampled++;
+					if(shareGenre(masks[i], masks[j])){
+						adjacent++;
+					}
+				}
+			}
+		}
+		GraphIfc<Integer> g = BitMatrixGraph.create(n, sampled == 0 ? 0 : (double)adjacent / sampled);
+
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				if(i != j && shareGenre(masks[i], masks[j])){
+					g.addEdge(i, j);
+				}
+			}
+		}
+		return g;
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	/**
+	 * Assigns every genre a bit and returns the genre mask of every vertex
+	 */
+	private static long[][] genreMasks(Map<Integer, Movie> movies){
+		Map<String, Integer> genreBits = new HashMap<>();
+		for(Movie m : movies.values()){
+			for(String genre : m.getGenres()){
+				genreBits.putIfAbsent(genre, genreBits.size());
+			}
+		}
+		int words = Math.max(1, (genreBits.size() + 63) / 64);
+		long[][] masks = new long[movies.size()][words];
+		for(int i = 0; i < movies.size(); i++){
+			for(String genre : movies.get(i + 1).getGenres()){
+				int bit = genreBits.get(genre);
+				masks[i][bit >>> 6] |= 1L << bit;
+			}
+		}
+		return masks;
+	}
+
+	private static boolean shareGenre(long[] a, long[] b){
+		for(int w = 0; w < a.length; w++){
+			if((a[w] & b[w]) != 0){
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,233 @@
+package analyzer;
+
+import graph.ConcurrentGraphBuilder;
+import graph.IntGraph;
+import similarity.Distances;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds a k-nearest-neighbour graph in which every movie is connected to the k movies at
+ * the smallest distance from it. Rows are computed in parallel and each row keeps its k
+ * best candidates in a bounded max-heap of primitives, so a row costs O(M log k) on top of
+ * computing its distances. Ties are broken in favour of the lower vertex index.
+ *
+ * Option 5 of the analyzer is the symmetric 2-nearest-neighbour graph of the Option 4
+ * distances.
+ */
+public class KnnGraphBuilder {
+	private final int k;
+	private final boolean symmetric;
+	private final int parallelism;
+
+	/**
+	 * Creates a builder that uses every available core
+	 * @param k The number of neighbours of each vertex
+	 * @param symmetric If true, every edge is also added in the opposite direction
+	 */
+	public KnnGraphBuilder(int k, boolean symmetric){
+		this(k, symmetric, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a builder with the given number of worker threads
+	 * @param k The number of neighbours of each vertex
+	 * @param symmetric If true, every edge is also added in the opposite direction
+	 * @param parallelism The number of worker threads
+	 */
+	public KnnGraphBuilder(int k, boolean symmetric, int parallelism){
+		if(k < 1 || parallelism < 1){
+			throw new IllegalArgumentException("k and parallelism must be positive");
+		}
+		this.k = k;
+		this.symmetric = symmetric;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Finds the nearest neighbours of every vertex
+	 * @param distances The distances between vertices
+	 * @return For every vertex, its min(k, M-1) nearest neighbours from nearest to farthest
+	 */
+	public int[][] nearest(Distances distances){
+		int n = distances.size();
+		int[][] nearest = new int[n][];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try{
+			int grain = Math.max(1, n / (parallelism * 8));
+			pool.invoke(new RowTask(distances, nearest, null, 0, n, grain));
+		}
+		finally{
+			pool.shutdown();
+		}
+		return nearest;
+	}
+
+	/**
+	 * Constructs the k-nearest-neighbour graph. Every edge has weight 1. The workers add
+	 * the edges of their rows as soon as they are found.
+	 * @param distances The distances between vertices
+	 * @return returns a graph of movies
+	 */
+	public IntGraph build(Distances distances){
+		int n = distances.size();
+		ConcurrentGraphBuilder edges = new ConcurrentGraphBuilder(n, false);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try{
+			int grain = Math.max(1, n / (parallelism * 8));
+			pool.invoke(new RowTask(distances, new int[n][], edges, 0, n, grain));
+		}
+		finally{
+			pool.shutdown();
+		}
+		return edges.build();
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	/**
+	 * Selects the nearest neighbours of a range of rows, reusing one row of
+	 * distances and one heap per task, and adds their edges if there is a graph
+	 */
+	private class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Distances distances;
+		private final int[][] nearest;
+		private final ConcurrentGraphBuilder edges;
+		private final int from, to, grain;
+
+		RowTask(Distances distances, int[][] nearest, ConcurrentGraphBuilder edges, int from, int to, int grain){
+			this.distances = distances;
+			this.nearest = nearest;
+			this.edges = edges;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > grain){
+				int mid = (from + to) >>> 1;
+				invokeAll(new RowTask(distances, nearest, edges, from, mid, grain), new RowTask(distances, nearest, edges, mid, to, grain));
+				return;
+			}
+			int n = distances.size();
+			double[] row = new double[n];
+			BoundedHeap heap = new BoundedHeap(Math.min(k, n - 1));
+			Distances.Rows rows = distances.rows();
+			ConcurrentGraphBuilder.Sink sink = edges == null ? null : edges.newSink();
+			for(int i = from; i < to; i++){
+				rows.distances(i, row);
+				heap.clear();
+				for(int j = 0; j < n; j++){
+					if(j != i){
+						heap.offer(row[j], j);
+					}
+				}
+				nearest[i] = heap.drainAscending();
+				if(sink != null){
+					for(int j : nearest[i]){
+						sink.addEdge(i, j);
+						if(symmetric){
+							sink.addEdge(j, i);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A max-heap of at most capacity (distance, vertex) pairs that keeps the smallest
+	 * pairs offered to it. The root is the worst pair kept so far.
+	 */
+	static class BoundedHeap {
+		private final double[] keys;
+		private final int[] values;
+		private int size;
+
+		BoundedHeap(int capacity){
+			keys = new double[capacity];
+			values = new int[capacity];
+		}
+
+		void clear(){
+			size = 0;
+		}
+
+		/**
+		 * Offers a pair, keeping it only if it is among the best seen so far
+		 */
+		void offer(double key, int value){
+			if(size < keys.length){
+				int i = size++;
+				// Sift up
+				while(i > 0){
+					int parent = (i - 1) >>> 1;
+					if(!worse(key, value, keys[parent], values[parent])){
+						break;
+					}
+					keys[i] = keys[parent];
+					values[i] = values[parent];
+					i = parent;
+				}
+				keys[i] = key;
+				values[i] = value;
+			}
+			else if(size > 0 && worse(keys[0], values[0], key, value)){
+				siftDown(key, value, size);
+			}
+		}
+
+		/**
+		 * Empties the heap, returning its values from best to worst
+		 */
+		int[] drainAscending(){
+			int[] sorted = new int[size];
+			while(size > 0){
+				sorted[size - 1] = values[0];
+				size--;
+				siftDown(keys[size], values[size], size);
+			}
+			return sorted;
+		}
+
+		/**
+		 * Places the pair at the root and sifts it down within the first n slots
+		 */
+		private void siftDown(double key, int value, int n){
+			int i = 0;
+			while(true){
+				int child = 2 * i + 1;
+				if(child >= n){
+					break;
+				}
+				if(child + 1 < n && worse(keys[child + 1], values[child + 1], keys[child], values[child])){
+					child++;
+				}
+				if(!worse(keys[child], values[child], key, value)){
+					break;
+				}
+				keys[i] = keys[child];
+				values[i] = values[child];
+				i = child;
+			}
+			if(n > 0){
+				keys[i] = key;
+				values[i] = value;
+			}
+		}
+
+		/**
+		 * Returns true if the first pair ranks after the second
+		 */
+		private static boolean worse(double key, int value, double otherKey, int otherValue){
+			return key > otherKey || (key == otherKey && value > otherValue);
+		}
+	}
+}
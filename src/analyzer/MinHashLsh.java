@@ -0,0 +1,230 @@
+package analyzer;
+
+import data.Movie;
+import data.RatingMatrix;
+import graph.Graph;
+import similarity.Distances;
+import util.Hashing;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Proposes pairs of movies that are likely to share many viewers without comparing every
+ * pair. Each movie gets a MinHash signature over the set of users who rated it; the
+ * signature is cut into bands of rows and two movies become a candidate pair if all rows
+ * of at least one band agree. Two movies whose rater sets have Jaccard similarity s become
+ * candidates with probability 1 - (1 - s^rows)^bands.
+ *
+ * Only the candidate pairs are then scored exactly, either by counting shared viewers or
+ * with a {@link Distances} function.
+ */
+public class MinHashLsh {
+	private final int bands;
+	private final int rows;
+	private final int[][] signatures;
+	private final long[] candidates;
+
+	/**
+	 * Computes the signatures and candidate pairs of the movies
+	 * @param movies The movies keyed by id 1...M
+	 * @param bands The number of bands
+	 * @param rows The number of signature rows per band
+	 * @param seed The seed for the hash functions
+	 */
+	public MinHashLsh(Map<Integer, Movie> movies, int bands, int rows, long seed){
+		if(bands < 1 || rows < 1){
+			throw new IllegalArgumentException("bands and rows must be positive");
+		}
+		this.bands = bands;
+		this.rows = rows;
+		int numHashes = bands * rows;
+		long[] salts = new long[numHashes];
+		long state = seed;
+		for(int h = 0; h < numHashes; h++){
+			state += 0x9E3779B97F4A7C15L;
+			salts[h] = Hashing.mix(state);
+		}
+
+		int n = movies.size();
+		signatures = new int[n][numHashes];
+		for(int i = 0; i < n; i++){
+			int[] signature = signatures[i];
+			Arrays.fill(signature, Integer.MAX_VALUE);
+			for(int userId : movies.get(i + 1).getRatings().keySet()){
+				for(int h = 0; h < numHashes; h++){
+					int value = (int)(Hashing.mix(userId ^ salts[h]) >>> 33);
+					if(value < signature[h]){
+						signature[h] = value;
+					}
+				}
+			}
+		}
+		candidates = findCandidates();
+	}
+
+	/**
+	 * Returns the candidate pairs, each encoded as (i &lt;&lt; 32) | j with i &lt; j, in
+	 * increasing order
+	 */
+	public long[] getCandidates(){
+		return candidates;
+	}
+
+	/**
+	 * Returns the number of candidate pairs
+	 */
+	public int numCandidates(){
+		return candidates.length;
+	}
+
+	/**
+	 * Returns the MinHash estimate of the Jaccard similarity of two movies' rater sets
+	 */
+	public double estimatedJaccard(int i, int j){
+		int same = 0;
+		for(int h = 0; h < signatures[i].length; h++){
+			if(signatures[i][h] == signatures[j][h]){
+				same++;
+			}
+		}
+		return (double)same / signatures[i].length;
+	}
+
+	/**
+	 * Constructs the Option 2 graph from the candidate pairs only: an edge from the lower
+	 * to the higher movie if at least threshold users watched both
+	 *
+	 * @param ratings The rating matrix
+	 * @param threshold The minimum number of shared viewers
+	 * @return returns a graph of movies
+	 */
+	public Graph<Integer> coViewerGraph(RatingMatrix ratings, int threshold){
+		Graph<Integer> g = new Graph<Integer>();
+		for(int i = 0; i < signatures.length; i++){
+			g.addVertex(i);
+		}
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		for(long pair : candidates){
+			int i = (int)(pair >>> 32);
+			int j = (int)pair;
+			if(sharedRaters(offsets, raters, i, j) >= threshold){
+				g.addEdge(i, j);
+			}
+		}
+		return g;
+	}
+
+	/**
+	 * Finds the k nearest neighbours of every movie among its candidates only
+	 * @param distances The exact distances
+	 * @param k The number of neighbours
+	 * @return For every vertex, up to k nearest candidates from nearest to farthest
+	 */
+	public int[][] nearest(Distances distances, int k){
+		int n = signatures.length;
+		// Group the candidates of every vertex, in both directions
+		int[] degree = new int[n + 1];
+		for(long pair : candidates){
+			degree[(int)(pair >>> 32) + 1]++;
+			degree[(int)pair + 1]++;
+		}
+		for(int v = 0; v < n; v++){
+			degree[v + 1] += degree[v];
+		}
+		int[] adjacent = new int[2 * candidates.length];
+		int[] next = Arrays.copyOf(degree, n);
+		for(long pair : candidates){
+			int i = (int)(pair >>> 32);
+			int j = (int)pair;
+			adjacent[next[i]++] = j;
+			adjacent[next[j]++] = i;
+		}
+
+		int[][] nearest = new int[n][];
+		KnnGraphBuilder.BoundedHeap heap = new KnnGraphBuilder.BoundedHeap(k);
+		for(int i = 0; i < n; i++){
+			heap.clear();
+			for(int a = degree[i]; a < degree[i + 1]; a++){
+				heap.offer(distances.distance(i, adjacent[a]), adjacent[a]);
+			}
+			nearest[i] = heap.drainAscending();
+		}
+		return nearest;
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	/**
+	 * Buckets the movies by each band of their signature and collects every pair that
+	 * shares a bucket
+	 */
+	private long[] findCandidates(){
+		int n = signatures.length;
+		long[] keys = new long[n];
+		long[] pairs = new long[Math.max(16, n)];
+		int numPairs = 0;
+		for(int b = 0; b < bands; b++){
+			for(int i = 0; i < n; i++){
+				long hash = b;
+				for(int r = b * rows; r < (b + 1) * rows; r++){
+					hash = Hashing.mix(hash * 31 + signatures[i][r]);
+				}
+				// The low bits hold the movie, so sorting groups equal band hashes
+				keys[i] = (hash & ~0xFFFFFFFFL) | i;
+			}
+			Arrays.sort(keys);
+			for(int start = 0; start < n; ){
+				int end = start + 1;
+				while(end < n && (keys[end] >>> 32) == (keys[start] >>> 32)){
+					end++;
+				}
+				for(int a = start; a < end; a++){
+					for(int c = a + 1; c < end; c++){
+						if(numPairs == pairs.length){
+							pairs = Arrays.copyOf(pairs, numPairs * 2);
+						}
+						// Movies in a bucket are sorted, so a's movie is the smaller one
+						pairs[numPairs++] = ((keys[a] & 0xFFFFFFFFL) << 32) | (keys[c] & 0xFFFFFFFFL);
+					}
+				}
+				start = end;
+			}
+		}
+		Arrays.sort(pairs, 0, numPairs);
+		int distinct = 0;
+		for(int p = 0; p < numPairs; p++){
+			if(distinct == 0 || pairs[distinct - 1] != pairs[p]){
+				pairs[distinct++] = pairs[p];
+			}
+		}
+		return Arrays.copyOf(pairs, distinct);
+	}
+
+	/**
+	 * Counts the users who rated both movies with a merge join of their columns
+	 */
+	private static int sharedRaters(int[] offsets, int[] raters, int i, int j){
+		int a = offsets[i], aEnd = offsets[i + 1];
+		int b = offsets[j], bEnd = offsets[j + 1];
+		int shared = 0;
+		while(a < aEnd && b < bEnd){
+			if(raters[a] < raters[b]){
+				a++;
+			}
+			else if(raters[a] > raters[b]){
+				b++;
+			}
+			else{
+				shared++;
+				a++;
+				b++;
+			}
+		}
+		return shared;
+	}
+}
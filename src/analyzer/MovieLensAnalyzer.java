@@ -1,13 +1,23 @@
 package analyzer;
 
 import data.Movie;
+import data.RatingMatrix;
 import data.Reviewer;
+import graph.BitMatrixGraph;
 import graph.Graph;
 import graph.GraphAlgorithms;
 import graph.GraphIfc;
+import graph.HyperAnf;
+import graph.IntGraph;
+import graph.MappedGraph;
+import graph.PathStatistics;
 import graph.WeightedGraph;
+import similarity.ItemSimilarity;
+import similarity.Measure;
 import util.DataLoader;
+import util.GraphCache;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -33,9 +43,10 @@ public class MovieLensAnalyzer {
 		System.out.println("The files being analysed are:");
 		System.out.println(args[0]);
 		System.out.println(args[1]);
-		loader.loadData(args[1],args[0]);
+		loader.loadData(args[1],args[0],args[0] + ".snapshot");
 		Map<Integer, Movie> movies = loader.getMovies(); // Stores Movies
 		Map<Integer, Reviewer> users = loader.getReviewers(); // Stores Users
+		RatingMatrix ratings = loader.getRatingMatrix(); // Stores every rating by user and by movie
 		Scanner input = new Scanner(System.in);
 		GraphIfc<Integer> g = new Graph<Integer>();
 		int typeOfGraph = 0;
@@ -47,27 +58,53 @@ public class MovieLensAnalyzer {
 			System.out.println("[Option 3] u and v are adjacent they share at least one genre");
 			System.out.println("[Option 4] u and v have a weighted edge that is larger the more different the movies are");
 			System.out.println("[Option 5] Small graph in which each node is connected to the two most similar movies");
-			System.out.print("Chose an option to build the Graph(1-5): ");
+			System.out.println("[Option 6] Small graph in which each node is connected to the five movies with the most similar ratings (adjusted cosine)");
+			System.out.print("Chose an option to build the Graph(1-6): ");
 			typeOfGraph  = input.nextInt();
-			if (typeOfGraph > 0 && 5 >= typeOfGraph) {
+			if (typeOfGraph > 0 && 6 >= typeOfGraph) {
 				numsWrong = false;
 			} else {
 				System.out.println("\u001B[31m" + "Please enter a number between 1 and 4" + "\u001B[0m");
 			}
 		}
-		//Makes Graphs based on inputs
-        switch (typeOfGraph) {
-            case 1 ->
-                    g = makeUnweightedMovieGraph1(movies, users);
-			case 2 ->
-					g = makeUnweightedMovieGraph2(movies, users);
-			case 3 ->
-					g = makeUnweightedMovieGraph3(movies, users);
-			case 4 ->
-					g = makeWeightedMovieGraph(movies, users);
-			case 5 ->
-					g = makeUnweightedMovieGraph4(movies, users);
-				//Do Stuff For Option 2
+		//Makes Graphs based on inputs, reusing a graph built by an earlier run on the same files
+		GraphCache cache = new GraphCache(args[0] + ".graphs", GraphCache.DEFAULT_MAX_BYTES);
+		String[] parameters = {"", "threshold=12", "threshold=12", "", "", "k=2,symmetric", "k=5,symmetric,adjusted cosine"};
+		String key = GraphCache.key(loader.getChecksum(), typeOfGraph, parameters[typeOfGraph]);
+		GraphIfc<Integer> cached = loader.getChecksum() == 0 ? null : cache.load(key);
+		if (cached != null) {
+			g = cached;
+		} else {
+			switch (typeOfGraph) {
+				case 1 ->
+						g = CoOccurrence.sameRatingGraph(ratings, 12);
+				case 2 ->
+						g = CoOccurrence.coViewerGraph(ratings, 12);
+				case 3 ->
+						g = GenreGraph.build(movies);
+				case 4 -> {
+					// A catalog whose weights would not fit on the heap is mapped from a file instead,
+					// which a later run on the same files reopens
+					if (WeightedBuilder.fitsOnHeap(movies.size())) {
+						g = new WeightedBuilder(movies, ratings).buildSymmetric();
+					} else {
+						try {
+							MappedGraph mapped = loader.getChecksum() == 0 ? null : cache.loadMapped(key);
+							g = mapped != null ? mapped : new WeightedBuilder(movies, ratings).buildMapped(cache.mappedFile(key));
+						} catch (IOException e) {
+							System.err.println("Could not write the mapped graph: " + e);
+							System.exit(-1);
+						}
+					}
+				}
+				case 5 ->
+						g = new KnnGraphBuilder(2, true).build(new WeightedBuilder(movies, ratings));
+				case 6 ->
+						g = new KnnGraphBuilder(5, true).build(new ItemSimilarity(ratings).distances(Measure.ADJUSTED_COSINE));
+			}
+			if (loader.getChecksum() != 0 && !(g instanceof MappedGraph)) {
+				cache.store(key, g);
+			}
 		}
 		//There are 3 choices for defining adjacency:
 		//[Option 1] u and v are adjacent if the same 12 users gave the same ratings to both movies
@@ -83,17 +120,21 @@ public class MovieLensAnalyzer {
 			System.out.println("[Option 4] Sort Movies by most similar to your movie(Works best with a weighted Graph)");
 			System.out.println("[Option 5] Quit");
 			System.out.println("[Option 6] Write graph as json file");
-			System.out.print("Chose an option(1-6): ");
+			System.out.println("[Option 7] Print approximate statistics about the graph (for graphs too large for Option 1)");
+			System.out.print("Chose an option(1-7): ");
 			switch (input.nextInt()) {
 				//[Option 1] Print out statistics about the graph
 				case 1 -> {
 					System.out.println("|V| = " + g.numVertices() + " vertices");
-					System.out.println("|E| = " + g.numEdges() + " edges");
-					System.out.println("Density = " + (((double)g.numEdges()) / ((double)((g.numVertices()) * ((g.numVertices())-1)))));
-					System.out.println("Max. degree = " + GraphAlgorithms.maxDegree(g));
-					int[] diameter = GraphAlgorithms.longestShortestPath(g);
-					System.out.println("Diameter = " + diameter[0] + " (" + (diameter[1]+1) + " to " + (diameter[2]+1) + ")");
-					System.out.println("Avg. path length = " + GraphAlgorithms.averagePathLength(g));
+					System.out.println("|E| = " + numEdges(g) + " edges");
+					System.out.println("Density = " + (((double)numEdges(g)) / ((double)g.numVertices() * (g.numVertices()-1))));
+					// The statistics do not depend on the order of neighbours; a mapped graph is read in
+					// place and a bit matrix is searched a word at a time
+					GraphIfc<Integer> csr = g instanceof MappedGraph || g instanceof BitMatrixGraph ? g : IntGraph.copyOf(g);
+					System.out.println("Max. degree = " + GraphAlgorithms.maxDegree(csr));
+					PathStatistics paths = PathStatistics.of(csr); // Diameter and average from one pass
+					System.out.println("Diameter = " + paths.diameter() + " (" + (paths.start()+1) + " to " + (paths.end()+1) + ")");
+					System.out.println("Avg. path length = " + paths.averagePathLength());
 				}
 				//[Option 2] Print node information
 				case 2 -> {
@@ -168,6 +209,39 @@ public class MovieLensAnalyzer {
 				case 6 -> {
 					MakeJSON.graphToJSON(g,movies);
 				}
+				//[Option 7] Print approximate statistics about the graph
+				case 7 -> {
+					// The registers of every vertex share one array, which bounds the precision
+					int maxPrecision = HyperAnf.maxLog2m(g.numVertices());
+					if (maxPrecision < 4) {
+						System.out.println("\u001B[31m" + "The graph has too many vertices to estimate" + "\u001B[0m");
+						continue;
+					}
+					numsWrong = true;
+					int precision = 0;
+					while (numsWrong) {
+						System.out.print("Enter precision, log2 of the registers per counter (4-" + maxPrecision + ", " + HyperAnf.DEFAULT_LOG2M + " gives about 6.5% error per run):");
+						precision = input.nextInt();
+						if (precision >= 4 && maxPrecision >= precision) {
+							numsWrong = false;
+						} else {
+							System.out.println("\u001B[31m" + "Please enter a number between 4 and " + maxPrecision + "\u001B[0m");
+						}
+					}
+					HyperAnf.Estimate estimate = new HyperAnf(precision, HyperAnf.DEFAULT_RUNS).estimate(g);
+					double[] pairs = estimate.reachablePairs();
+					// HyperANF counts hops, so on a weighted graph these are not the weighted path lengths of Option 1
+					System.out.println(PathStatistics.isUnweighted(g) ? "Hop statistics:" : "Unweighted hop statistics (edge weights are ignored):");
+					System.out.println("|V| = " + g.numVertices() + " vertices");
+					System.out.println("|E| = " + numEdges(g) + " edges");
+					System.out.println(String.format("Avg. path length ~ %.4f +- %.4f", estimate.averagePathLength(), estimate.averagePathLengthError()));
+					System.out.println(String.format("Effective diameter (%.0f%% of pairs) ~ %.3f +- %.3f", 100 * HyperAnf.EFFECTIVE_FRACTION, estimate.effectiveDiameter(), estimate.effectiveDiameterError()));
+					System.out.println("Diameter >= " + estimate.rounds());
+					System.out.println(String.format("Reachable pairs by distance (+- %.1f%%):", 100 * estimate.reachablePairsError()));
+					for (int t = 0; t < pairs.length; t++) {
+						System.out.println(String.format("\t<= %d: %.0f", t, pairs[t]));
+					}
+				}
 				default -> System.out.println("\u001B[31m" + "Please enter a number between 1 and 4" + "\u001B[0m");
 			}
 		}
@@ -213,7 +287,7 @@ public class MovieLensAnalyzer {
 	 * @param users List of reviewers to construct the edges in the graph from
 	 * @return returns a graph of movies
 	 */
-	private static Graph<Integer> makeUnweightedMovieGraph1(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
+	static Graph<Integer> makeUnweightedMovieGraph1(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
 		Graph<Integer> g = new Graph<Integer>();
 		for(int i = 0; i < movies.size(); i++){
 			g.addVertex(i);
@@ -243,7 +317,7 @@ public class MovieLensAnalyzer {
 	 * @param users List of reviewers to construct the edges in the graph from
 	 * @return returns a graph of movies
 	 */
-	private static Graph<Integer> makeUnweightedMovieGraph2(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
+	static Graph<Integer> makeUnweightedMovieGraph2(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
 		Graph<Integer> g = new Graph<Integer>();
 		for(int i = 0; i < movies.size(); i++){
 			g.addVertex(i);
@@ -273,7 +347,7 @@ public class MovieLensAnalyzer {
 	 * @param users List of reviewers to construct the edges in the graph from
 	 * @return returns a graph of movies
 	 */
-	private static GraphIfc<Integer> makeUnweightedMovieGraph3(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
+	static GraphIfc<Integer> makeUnweightedMovieGraph3(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
 		Graph<Integer> g = new Graph<Integer>();
 		for(int i = 0; i < movies.size(); i++){
 			g.addVertex(i);
@@ -301,7 +375,7 @@ public class MovieLensAnalyzer {
 	 * @param users List of reviewers to construct the edges in the graph from
 	 * @return returns a graph of movies
 	 */
-	private static GraphIfc<Integer> makeWeightedMovieGraph(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
+	static GraphIfc<Integer> makeWeightedMovieGraph(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
 		WeightedGraph<Integer> g = new WeightedGraph<Integer>();
 		for(int i = 0; i < movies.size(); i++){
 			g.addVertex(i);
@@ -331,64 +405,6 @@ public class MovieLensAnalyzer {
 		}
 		return g;
 	}
-	/**
-	 * Constructs a weighted connected graph of movies in which the edge weight is given by
-	 * ((100 * (genre differences / totalGenres)) + (100 * (ratings differences / totalRatings))^2
-	 *
-	 * @param movies List of movies for the nodes in the Graph
-	 * @param users List of reviewers to construct the edges in the graph from
-	 * @return returns a graph of movies
-	 */
-	private static GraphIfc<Integer> makeUnweightedMovieGraph4(Map<Integer, Movie> movies, Map<Integer, Reviewer> users){
-		WeightedGraph<Integer> g = new WeightedGraph<Integer>();
-		int num_chosen = 2;
-		for(int i = 0; i < movies.size(); i++){
-			g.addVertex(i);
-		}
-		for(int i = 0; i < movies.size(); i++){
-			int[] mostSimilars = new int[num_chosen];
-			double[] mostSimilarsValues = new double[num_chosen];
-			for(int j = 0; j < num_chosen; j++){
-				mostSimilarsValues[j] = Double.MAX_VALUE;
-			}
-			for(int j = 0; j < movies.size(); j++){
-				if(i != j){
-					double genreDiffs = 0;
-					double totalGenres = 0;
-					double ratingsDiffs = 0;
-					double totalRatings = 0;
-					for(String genre:movies.get(i+1).getGenres()){
-						if(!movies.get(j+1).getGenres().contains(genre)){
-							genreDiffs++;
-						}
-						totalGenres++;
-					}
-					for(int k = 1; k <= users.size(); k++){
-						if(users.get(k).ratedMovie(i+1) && users.get(k).ratedMovie(j+1)){
-							ratingsDiffs += Math.abs(users.get(k).getMovieRating(i+1) - users.get(k).getMovieRating(j+1)) / 4;
-						}
-						totalRatings++;
-					}
-					double totalDiff = (Math.pow((100 * (genreDiffs / totalGenres)) + (100 * (ratingsDiffs / totalRatings)),2));
-
-					if(totalDiff < mostSimilarsValues[num_chosen-1]){
-						for(int k = 0; k < num_chosen; k++){
-							if (totalDiff < mostSimilarsValues[k]){
-								mostSimilarsValues[k] = totalDiff;
-								mostSimilars[k] = j;
-								break;
-							}
-						}
-					}
-				}
-			}
-			for(int j = 0; j < num_chosen; j++){
-				g.addEdge(i,mostSimilars[j]);
-				g.addEdge(mostSimilars[j],i);
-			}
-		}
-		return g;
-	}
 	/**
 	 * Takes a graph of movies and a movie and ranks how similar all other movies are to your movie
 	 *
@@ -397,7 +413,8 @@ public class MovieLensAnalyzer {
 	 * @return returns a ranked list of the most similar movies to yours
 	 */
 	private static int[] mostSimilar(GraphIfc<Integer> g, int movie){
-		int[] movies = GraphAlgorithms.floydWarshall(g)[movie];
+		// One Dijkstra search gives the row of the all-pairs matrix without building it
+		int[] movies = GraphAlgorithms.shortestPathLengths(g, movie);
 		Pair<Integer,Double>[] pairs = new Pair[movies.length];
 		for(int i = 0; i < movies.length; i++){
 			pairs[i] = new Pair<Integer,Double>(i,movies[i]);
@@ -409,4 +426,14 @@ public class MovieLensAnalyzer {
 		}
 		return temp;
 	}
+
+	/**
+	 * Returns the number of edges of a graph, which for a mapped graph may exceed Integer.MAX_VALUE
+	 *
+	 * @param g Graph of Integers
+	 * @return the number of edges
+	 */
+	private static long numEdges(GraphIfc<Integer> g){
+		return g instanceof MappedGraph ? ((MappedGraph) g).numEdgesLong() : g.numEdges();
+	}
 }
@@ -0,0 +1,218 @@
+package analyzer;
+
+import data.RatingMatrix;
+import graph.GraphIfc;
+
+import java.util.Arrays;
+
+/**
+ * The co-occurrence count of every pair of movies, computed once so that graphs and
+ * statistics at any threshold can be derived without another pass over the ratings.
+ * Counts are kept in a triangular array over vertex indices 0...M-1 (movie id - 1), see
+ * {@link CoOccurrence#pairIndex(int, int, int)}. If no count exceeds Short.MAX_VALUE the
+ * array is stored as shorts, which halves its size.
+ *
+ * A histogram of the counts is built up front, so the number of pairs at or above any
+ * threshold is a single lookup.
+ */
+public class PairCounts {
+	private final int n;
+	private final short[] shortCounts;
+	private final int[] intCounts;
+	private final int maxCount;
+	private final int[] atLeast;
+
+	/**
+	 * Wraps a triangular array of counts, compacting it to shorts if they fit
+	 * @param counts The triangular array of pair counts
+	 * @param n The number of movies
+	 */
+	public PairCounts(int[] counts, int n){
+		if(counts.length != CoOccurrence.numPairs(n)){
+			throw new IllegalArgumentException("Expected " + CoOccurrence.numPairs(n) + " pair counts");
+		}
+		this.n = n;
+		int max = 0;
+		for(int count : counts){
+			if(count < 0){
+				throw new IllegalArgumentException("Negative pair count: " + count);
+			}
+			max = Math.max(max, count);
+		}
+		maxCount = max;
+		if(max <= Short.MAX_VALUE){
+			shortCounts = new short[counts.length];
+			for(int k = 0; k < counts.length; k++){
+				shortCounts[k] = (short)counts[k];
+			}
+			intCounts = null;
+		}
+		else{
+			shortCounts = null;
+			intCounts = counts;
+		}
+		atLeast = new int[max + 2];
+		for(int count : counts){
+			atLeast[count]++;
+		}
+		for(int c = max; c >= 0; c--){
+			atLeast[c] += atLeast[c + 1];
+		}
+	}
+
+	/**
+	 * Counts the users who rated both movies of every pair
+	 * @param ratings The rating matrix
+	 * @return The pair counts
+	 */
+	public static PairCounts coViewers(RatingMatrix ratings){
+		return new PairCounts(CoOccurrence.coViewerCounts(ratings), ratings.numMovies());
+	}
+
+	/**
+	 * Counts the users who gave both movies of every pair the same rating
+	 * @param ratings The rating matrix
+	 * @return The pair counts
+	 */
+	public static PairCounts sameRating(RatingMatrix ratings){
+		return new PairCounts(CoOccurrence.sameRatingCounts(ratings), ratings.numMovies());
+	}
+
+	/**
+	 * Returns the number of movies
+	 */
+	public int numMovies(){
+		return n;
+	}
+
+	/**
+	 * Returns the largest count of any pair
+	 */
+	public int maxCount(){
+		return maxCount;
+	}
+
+	/**
+	 * Returns true if the counts are stored as shorts
+	 */
+	public boolean isCompact(){
+		return shortCounts != null;
+	}
+
+	/**
+	 * Returns the count of a pair of distinct movies, in either order
+	 */
+	public int count(int i, int j){
+		return i < j ? countAt(CoOccurrence.pairIndex(i, j, n)) : countAt(CoOccurrence.pairIndex(j, i, n));
+	}
+
+	/**
+	 * Returns the number of pairs whose count is at least the threshold
+	 */
+	public int numPairsAtLeast(int threshold){
+		if(threshold <= 0){
+			return atLeast[0];
+		}
+		return threshold > maxCount ? 0 : atLeast[threshold];
+	}
+
+	/**
+	 * Constructs the graph at a threshold: an edge from the lower to the higher movie of
+	 * every pair whose count is at least the threshold, and also the reverse edge if the
+	 * graph is symmetric. sameRating(r).graph(12, true) is the Option 1 graph and
+	 * coViewers(r).graph(12, false) is the Option 2 graph, in the same representation that
+	 * {@link CoOccurrence} builds; the histogram saves it counting the edges first.
+	 * @param threshold The minimum count
+	 * @param symmetric If true, every edge is also added in the opposite direction
+	 * @return returns a graph of movies
+	 */
+	public GraphIfc<Integer> graph(int threshold, boolean symmetric){
+		return CoOccurrence.graphFromCounts(this::countAt, n, threshold, symmetric, numPairsAtLeast(threshold));
+	}
+
+	/**
+	 * Computes the degree of every movie at several thresholds in one pass over the pairs,
+	 * counting both movies of a pair
+	 * @param thresholds The thresholds
+	 * @return degrees[t][v], the number of movies whose count with v is at least thresholds[t]
+	 */
+	public int[][] degreeTable(int... thresholds){
+		// Each pair is counted in the bucket of the largest threshold it reaches and the
+		// buckets are then summed from the largest threshold down
+		int[] sorted = thresholds.clone();
+		Arrays.sort(sorted);
+		int[][] buckets = new int[sorted.length][n];
+		for(int i = 0; i < n; i++){
+			int base = CoOccurrence.rowBase(i, n);
+			for(int j = i + 1; j < n; j++){
+				int count = countAt(base + j);
+				int bucket = largestReached(sorted, count);
+				if(bucket >= 0){
+					buckets[bucket][i]++;
+					buckets[bucket][j]++;
+				}
+			}
+		}
+		for(int t = sorted.length - 2; t >= 0; t--){
+			for(int v = 0; v < n; v++){
+				buckets[t][v] += buckets[t + 1][v];
+			}
+		}
+		int[][] degrees = new int[thresholds.length][];
+		for(int t = 0; t < thresholds.length; t++){
+			degrees[t] = buckets[Arrays.binarySearch(sorted, thresholds[t])];
+		}
+		return degrees;
+	}
+
+	/**
+	 * Formats a table of the number of pairs, the maximum and average degree and the
+	 * number of isolated movies at each threshold
+	 * @param thresholds The thresholds
+	 * @return The table, one line per threshold
+	 */
+	public String sweep(int... thresholds){
+		int[][] degrees = degreeTable(thresholds);
+		StringBuilder s = new StringBuilder();
+		s.append(String.format("%10s %10s %10s %10s %10s%n", "threshold", "pairs", "max deg.", "avg. deg.", "isolated"));
+		for(int t = 0; t < thresholds.length; t++){
+			int max = 0, isolated = 0;
+			for(int degree : degrees[t]){
+				max = Math.max(max, degree);
+				if(degree == 0){
+					isolated++;
+				}
+			}
+			int pairs = numPairsAtLeast(thresholds[t]);
+			s.append(String.format("%10d %10d %10d %10.2f %10d%n", thresholds[t], pairs, max, n == 0 ? 0.0 : 2.0 * pairs / n, isolated));
+		}
+		return s.toString();
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	private int countAt(int index){
+		return shortCounts != null ? shortCounts[index] : intCounts[index];
+	}
+
+	/**
+	 * Returns the index of the largest sorted threshold that count reaches, or -1
+	 */
+	private static int largestReached(int[] sorted, int count){
+		int lo = 0, hi = sorted.length - 1, found = -1;
+		while(lo <= hi){
+			int mid = (lo + hi) >>> 1;
+			if(sorted[mid] <= count){
+				found = mid;
+				lo = mid + 1;
+			}
+			else{
+				hi = mid - 1;
+			}
+		}
+		return found;
+	}
+}
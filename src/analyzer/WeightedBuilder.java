@@ -0,0 +1,408 @@
+package analyzer;
+
+import data.Movie;
+import data.RatingMatrix;
+import graph.DenseWeightedGraph;
+import graph.MappedGraph;
+import graph.SymmetricWeightedGraph;
+import similarity.Distances;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the weighted movie distances of Option 4 in parallel. The weight of the edge
+ * from movie i to movie j is
+ * ((100 * (genre differences / totalGenres)) + (100 * (ratings differences / totalRatings))^2
+ * exactly as in the original builder, where the genre differences are the genres of i that
+ * j lacks and the ratings differences sum |r_i - r_j| / 4 over the users who rated both.
+ *
+ * Genres are precomputed as bit masks. Rows of the weight matrix are split across a
+ * fork-join pool and each task scatters movie i's ratings into a dense row buffer
+ * of its own, so every pair costs one pass over movie j's raters.
+ */
+public class WeightedBuilder implements Distances {
+	/** The largest array the JVM allocates, a few header words below Integer.MAX_VALUE */
+	public static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	private final RatingMatrix ratings;
+	private final int n;
+	private final long[][] genreMasks;
+	private final int[] genreCounts;
+	private final int parallelism;
+
+	/**
+	 * Creates a builder that uses every available core
+	 * @param movies The movies keyed by id 1...M
+	 * @param ratings The rating matrix
+	 */
+	public WeightedBuilder(Map<Integer, Movie> movies, RatingMatrix ratings){
+		this(movies, ratings, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a builder with the given number of worker threads
+	 * @param movies The movies keyed by id 1...M
+	 * @param ratings The rating matrix
+	 * @param parallelism The number of worker threads
+	 */
+	public WeightedBuilder(Map<Integer, Movie> movies, RatingMatrix ratings, int parallelism){
+		if(parallelism < 1){
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		this.ratings = ratings;
+		this.parallelism = parallelism;
+		n = movies.size();
+
+		Map<String, Integer> genreBits = new HashMap<>();
+		for(Movie m : movies.values()){
+			for(String genre : m.getGenres()){
+				genreBits.putIfAbsent(genre, genreBits.size());
+			}
+		}
+		int words = (genreBits.size() + 63) / 64;
+		genreMasks = new long[n][words];
+		genreCounts = new int[n];
+		for(int i = 0; i < n; i++){
+			for(String genre : movies.get(i + 1).getGenres()){
+				int bit = genreBits.get(genre);
+				genreMasks[i][bit >>> 6] |= 1L << bit;
+			}
+			genreCounts[i] = movies.get(i + 1).getGenres().size();
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads
+	 */
+	public int getParallelism(){
+		return parallelism;
+	}
+
+	/**
+	 * Returns true if the triangular weights of buildSymmetric fit in one array and in a
+	 * quarter of the heap. Larger catalogs should be built with buildMapped.
+	 * @param numMovies The number of movies
+	 * @return True if buildSymmetric can hold the weights
+	 */
+	public static boolean fitsOnHeap(int numMovies){
+		long pairs = (long)numMovies * (numMovies - 1) / 2;
+		return pairs <= MAX_ARRAY_LENGTH && 8 * pairs <= Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	/**
+	 * Computes the full weight matrix in row-major order. The diagonal is NaN.
+	 * @return The weights, where [i * n + j] is the weight of the edge from vertex i to vertex j
+	 * @throws IllegalArgumentException if n * n exceeds the largest array; use buildMapped
+	 */
+	public double[] weights(){
+		long size = (long)n * n;
+		if(size > MAX_ARRAY_LENGTH){
+			throw new IllegalArgumentException("Too many movies for a weight matrix: " + n + " movies need " + size
+					+ " weights, more than an array holds; use buildMapped");
+		}
+		double[] weights = new double[(int)size];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try{
+			int grain = Math.max(1, n / (parallelism * 8));
+			pool.invoke(new RowTask(weights, 0, 0, n, grain));
+		}
+		finally{
+			pool.shutdown();
+		}
+		for(int i = 0; i < n; i++){
+			weights[i * n + i] = Double.NaN;
+		}
+		return weights;
+	}
+
+	/**
+	 * Constructs the complete weighted graph of Option 4 as a dense weight matrix
+	 * @return returns a graph of movies
+	 * @throws IllegalArgumentException if n * n exceeds the largest array; use buildMapped
+	 */
+	public DenseWeightedGraph build(){
+		return DenseWeightedGraph.fromMatrix(n, weights());
+	}
+
+	/**
+	 * Constructs the complete weighted graph of Option 4 in triangular storage. Only the
+	 * genre term of the weight depends on the direction, so the ratings differences are
+	 * computed and stored once per unordered pair and the genre term is applied from the
+	 * genre masks whenever a weight is read. The weights are identical to {@link #build()}.
+	 * @return returns a graph of movies
+	 * @throws IllegalArgumentException if the pairs exceed the largest array; use buildMapped
+	 */
+	public SymmetricWeightedGraph buildSymmetric(){
+		double[] upper = new double[CoOccurrence.numPairs(n)];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try{
+			int grain = Math.max(1, n / (parallelism * 8));
+			pool.invoke(new UpperRowTask(upper, 0, n, grain));
+		}
+		finally{
+			pool.shutdown();
+		}
+		double totalRatings = ratings.numUsers();
+		return SymmetricWeightedGraph.fromTriangle(n, upper,
+				(u, v, ratingsDiffs) -> combine(genreDiffs(u, v), genreCounts[u], ratingsDiffs, totalRatings));
+	}
+
+	/**
+	 * Constructs the complete weighted graph of Option 4 in a memory-mapped file, for
+	 * catalogs whose weights do not fit on the heap. Rows are computed a block at a time
+	 * on the pool and streamed to the file, so the heap only ever holds one block.
+	 * @param filename The graph file, which is overwritten
+	 * @return returns a graph of movies mapped from the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public MappedGraph buildMapped(String filename) throws IOException {
+		int block = parallelism * 8;
+		double[] rows = new double[Math.min(block, n) * n];
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try(MappedGraph.Writer writer = new MappedGraph.Writer(filename, n, true)){
+			for(int from = 0; from < n; from += block){
+				int to = Math.min(n, from + block);
+				pool.invoke(new RowTask(rows, from, from, to, 1));
+				for(int i = from; i < to; i++){
+					int base = (i - from) * n;
+					for(int j = 0; j < n; j++){
+						if(i != j){
+							writer.addEdge(i, j, rows[base + j]);
+						}
+					}
+				}
+			}
+			// Only a complete graph is published, so a later run cannot reopen a partial one
+			writer.finish();
+		}
+		finally{
+			pool.shutdown();
+		}
+		return MappedGraph.open(filename);
+	}
+
+	/**
+	 * Computes the weight of the edge from vertex i to vertex j
+	 */
+	public double weight(int i, int j){
+		return combine(genreDiffs(i, j), genreCounts[i], ratingsDiffs(i, j), ratings.numUsers());
+	}
+
+	@Override
+	public int size(){
+		return n;
+	}
+
+	@Override
+	public double distance(int i, int j){
+		return weight(i, j);
+	}
+
+	@Override
+	public void distances(int i, double[] out){
+		computeRow(i, newBuffer(), out, 0);
+	}
+
+	@Override
+	public Rows rows(){
+		float[] buffer = newBuffer();
+		return (i, out) -> computeRow(i, buffer, out, 0);
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	/**
+	 * Returns a scratch row of numUsers floats for computeRow, all NaN. Every task has its
+	 * own, so none outlives the task in the threads of a shared pool.
+	 */
+	private float[] newBuffer(){
+		float[] buffer = new float[ratings.numUsers()];
+		Arrays.fill(buffer, Float.NaN);
+		return buffer;
+	}
+
+	/**
+	 * Computes the weights from vertex i to every other vertex into out
+	 * @param i The source vertex
+	 * @param buffer A dense buffer of numUsers floats that is all NaN on entry and exit
+	 * @param out Receives the weight to vertex j at out[at + j]; out[at + i] is left untouched
+	 * @param at The position of the row in out
+	 */
+	void computeRow(int i, float[] buffer, double[] out, int at){
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		float[] values = ratings.colRatings();
+		for(int k = offsets[i]; k < offsets[i + 1]; k++){
+			buffer[raters[k]] = values[k];
+		}
+		double totalRatings = ratings.numUsers();
+		for(int j = 0; j < n; j++){
+			if(i == j){
+				continue;
+			}
+			// Every term is a multiple of 1/8, so the sum is exact in any order
+			double ratingsDiffs = 0;
+			for(int k = offsets[j]; k < offsets[j + 1]; k++){
+				float r = buffer[raters[k]];
+				if(r == r){ // not NaN, so the user rated movie i
+					ratingsDiffs += Math.abs((double)r - (double)values[k]) / 4;
+				}
+			}
+			out[at + j] = combine(genreDiffs(i, j), genreCounts[i], ratingsDiffs, totalRatings);
+		}
+		for(int k = offsets[i]; k < offsets[i + 1]; k++){
+			buffer[raters[k]] = Float.NaN;
+		}
+	}
+
+	/**
+	 * Computes the ratings differences from vertex i to every vertex after it into the
+	 * upper triangle
+	 * @param i The source vertex
+	 * @param buffer A dense buffer of numUsers floats that is all NaN on entry and exit
+	 * @param upper The upper triangle of the ratings differences
+	 */
+	void computeUpperRow(int i, float[] buffer, double[] upper){
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		float[] values = ratings.colRatings();
+		for(int k = offsets[i]; k < offsets[i + 1]; k++){
+			buffer[raters[k]] = values[k];
+		}
+		int base = CoOccurrence.rowBase(i, n);
+		for(int j = i + 1; j < n; j++){
+			double ratingsDiffs = 0;
+			for(int k = offsets[j]; k < offsets[j + 1]; k++){
+				float r = buffer[raters[k]];
+				if(r == r){ // not NaN, so the user rated movie i
+					ratingsDiffs += Math.abs((double)r - (double)values[k]) / 4;
+				}
+			}
+			upper[base + j] = ratingsDiffs;
+		}
+		for(int k = offsets[i]; k < offsets[i + 1]; k++){
+			buffer[raters[k]] = Float.NaN;
+		}
+	}
+
+	/**
+	 * Returns the number of genres of vertex i that vertex j does not have
+	 */
+	int genreDiffs(int i, int j){
+		long[] a = genreMasks[i];
+		long[] b = genreMasks[j];
+		int diffs = 0;
+		for(int w = 0; w < a.length; w++){
+			diffs += Long.bitCount(a[w] & ~b[w]);
+		}
+		return diffs;
+	}
+
+	/**
+	 * Returns the number of genres of vertex i
+	 */
+	int genreCount(int i){
+		return genreCounts[i];
+	}
+
+	/**
+	 * Sums |r_i - r_j| / 4 over the users who rated both movies with a merge join
+	 */
+	double ratingsDiffs(int i, int j){
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		float[] values = ratings.colRatings();
+		int a = offsets[i], aEnd = offsets[i + 1];
+		int b = offsets[j], bEnd = offsets[j + 1];
+		double diffs = 0;
+		while(a < aEnd && b < bEnd){
+			if(raters[a] < raters[b]){
+				a++;
+			}
+			else if(raters[a] > raters[b]){
+				b++;
+			}
+			else{
+				diffs += Math.abs((double)values[a] - (double)values[b]) / 4;
+				a++;
+				b++;
+			}
+		}
+		return diffs;
+	}
+
+	/**
+	 * Combines the parts of the weight in the same order as the original formula
+	 */
+	static double combine(double genreDiffs, double totalGenres, double ratingsDiffs, double totalRatings){
+		return Math.pow((100 * (genreDiffs / totalGenres)) + (100 * (ratingsDiffs / totalRatings)), 2);
+	}
+
+	/**
+	 * Computes a range of rows into a row-major matrix, where row i starts at
+	 * (i - first) * n. Each worker thread reuses its own rating buffer.
+	 */
+	private class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double[] weights;
+		private final int first, from, to, grain;
+
+		RowTask(double[] weights, int first, int from, int to, int grain){
+			this.weights = weights;
+			this.first = first;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > grain){
+				int mid = (from + to) >>> 1;
+				invokeAll(new RowTask(weights, first, from, mid, grain), new RowTask(weights, first, mid, to, grain));
+				return;
+			}
+			float[] buffer = newBuffer();
+			for(int i = from; i < to; i++){
+				computeRow(i, buffer, weights, (i - first) * n);
+			}
+		}
+	}
+
+	/**
+	 * Computes the upper-triangle part of a range of rows
+	 */
+	private class UpperRowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final double[] upper;
+		private final int from, to, grain;
+
+		UpperRowTask(double[] upper, int from, int to, int grain){
+			this.upper = upper;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > grain){
+				int mid = (from + to) >>> 1;
+				invokeAll(new UpperRowTask(upper, from, mid, grain), new UpperRowTask(upper, mid, to, grain));
+				return;
+			}
+			float[] buffer = newBuffer();
+			for(int i = from; i < to; i++){
+				computeUpperRow(i, buffer, upper);
+			}
+		}
+	}
+}
@@ -1,19 +1,19 @@
 package data;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
 /**
- * This class represents a single movie.
+ * This class represents a single movie. Once the data is loaded the ratings are a view
+ * over the movie's column of the {@link RatingMatrix}.
  * @author alchambers
  */
 public class Movie {
 	private int year;
 	private int movieId;
 	private String title;	
-	private Map<Integer, Double> ratings;
+	RatingSlice ratings;
 	private Set<String> genres;	
 	
 	/**
@@ -26,14 +26,16 @@ public class Movie {
 		year = theYear;
 		movieId = theId;
 		title = theTitle;
-		ratings = new HashMap<>();
+		ratings = new RatingSlice();
 		genres = new HashSet<>();
 	}
 	
 	/**
 	 * Records a rating for the movie
 	 * @param userId The id of the user rating the movie
-	 * @param rating The rating given by the uesr
+	 * @param rating The rating given by the uesr, which a float must hold exactly
+	 *               (e.g. any half-star value)
+	 * @throws IllegalArgumentException if a float cannot hold the rating exactly
 	 */
 	public void addRating(int userId, double rating){
 		if(userId < 0 || rating < 0){
@@ -56,7 +58,7 @@ public class Movie {
 	 * @return true if the user rated the movie, false otherwise
 	 */
 	public boolean rated(int userId){
-		return ratings.containsKey(userId);
+		return ratings.indexOf(userId) >= 0;
 	}
 		
 	/**
@@ -65,11 +67,7 @@ public class Movie {
 	 * @return The user's rating or -1 if the user has not rated the movie
 	 */
 	public double getRating(int userId){
-		Double rating = ratings.get(userId);
-		if(rating == null){
-			return -1;
-		}
-		return rating;
+		return ratings.rating(userId);
 	}
 	
 	/**
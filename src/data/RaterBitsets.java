@@ -0,0 +1,154 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * A dense bitset of raters per movie. Bit r of movie i's bitset is set if the user in row r
+ * of the {@link RatingMatrix} rated the movie (optionally with one particular rating).
+ * The bitsets are stored back to back in one long[] so that counting the users two movies
+ * share costs U/64 AND-and-popcount word operations instead of U hash probes.
+ *
+ * Movies are addressed by vertex index 0...M-1, i.e. movie id - 1.
+ */
+public class RaterBitsets {
+	private final int numMovies;
+	private final int words;
+	private final long[] bits;
+
+	private RaterBitsets(int numMovies, int numUsers){
+		this.numMovies = numMovies;
+		words = (numUsers + 63) >>> 6;
+		bits = new long[numMovies * words];
+	}
+
+	/**
+	 * Builds the bitsets of every user who rated each movie
+	 * @param ratings The rating matrix
+	 * @return The rater bitsets
+	 */
+	public static RaterBitsets of(RatingMatrix ratings){
+		RaterBitsets sets = new RaterBitsets(ratings.numMovies(), ratings.numUsers());
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		for(int i = 0; i < sets.numMovies; i++){
+			for(int k = offsets[i]; k < offsets[i + 1]; k++){
+				sets.set(i, raters[k]);
+			}
+		}
+		return sets;
+	}
+
+	/**
+	 * Builds the bitsets of the users who gave each movie exactly the given rating
+	 * @param ratings The rating matrix
+	 * @param rating The rating to select
+	 * @return The rater bitsets
+	 */
+	public static RaterBitsets ofRating(RatingMatrix ratings, float rating){
+		RaterBitsets sets = new RaterBitsets(ratings.numMovies(), ratings.numUsers());
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		float[] values = ratings.colRatings();
+		for(int i = 0; i < sets.numMovies; i++){
+			for(int k = offsets[i]; k < offsets[i + 1]; k++){
+				if(values[k] == rating){
+					sets.set(i, raters[k]);
+				}
+			}
+		}
+		return sets;
+	}
+
+	/**
+	 * Builds one set of bitsets per distinct rating value, so that the users who gave two
+	 * movies the same rating are the sum of the intersections across the layers
+	 * @param ratings The rating matrix
+	 * @return The rater bitsets of every rating value, in increasing order of rating
+	 */
+	public static RaterBitsets[] byRating(RatingMatrix ratings){
+		float[] values = ratings.colRatings().clone();
+		Arrays.sort(values);
+		int distinct = 0;
+		for(int k = 0; k < values.length; k++){
+			if(distinct == 0 || values[distinct - 1] != values[k]){
+				values[distinct++] = values[k];
+			}
+		}
+		RaterBitsets[] layers = new RaterBitsets[distinct];
+		for(int v = 0; v < distinct; v++){
+			layers[v] = ofRating(ratings, values[v]);
+		}
+		return layers;
+	}
+
+	/**
+	 * Returns the number of movies
+	 */
+	public int numMovies(){
+		return numMovies;
+	}
+
+	/**
+	 * Returns the number of 64-bit words in each movie's bitset
+	 */
+	public int words(){
+		return words;
+	}
+
+	/**
+	 * Returns true if the user in the given row is in the movie's set
+	 */
+	public boolean contains(int movie, int row){
+		return (bits[movie * words + (row >>> 6)] & (1L << row)) != 0;
+	}
+
+	/**
+	 * Returns the number of users in the movie's set
+	 */
+	public int cardinality(int movie){
+		int count = 0;
+		for(int w = movie * words; w < (movie + 1) * words; w++){
+			count += Long.bitCount(bits[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of users in both movies' sets
+	 */
+	public int intersectionCount(int i, int j){
+		return intersectionCount(bits, i * words, bits, j * words, words);
+	}
+
+	/**
+	 * Returns the number of users in movie i's set of this and movie j's set of other,
+	 * which must have the same number of users
+	 */
+	public int intersectionCount(int i, RaterBitsets other, int j){
+		return intersectionCount(bits, i * words, other.bits, j * other.words, words);
+	}
+
+	/**
+	 * The intersection-count kernel: popcount(a[aOff + w] &amp; b[bOff + w]) summed over
+	 * the words. The loop is unrolled into four independent accumulators so the JIT can
+	 * keep several popcount instructions in flight.
+	 */
+	static int intersectionCount(long[] a, int aOff, long[] b, int bOff, int words){
+		int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+		int w = 0;
+		for(; w + 3 < words; w += 4){
+			c0 += Long.bitCount(a[aOff + w] & b[bOff + w]);
+			c1 += Long.bitCount(a[aOff + w + 1] & b[bOff + w + 1]);
+			c2 += Long.bitCount(a[aOff + w + 2] & b[bOff + w + 2]);
+			c3 += Long.bitCount(a[aOff + w + 3] & b[bOff + w + 3]);
+		}
+		for(; w < words; w++){
+			c0 += Long.bitCount(a[aOff + w] & b[bOff + w]);
+		}
+		return c0 + c1 + c2 + c3;
+	}
+
+	private void set(int movie, int row){
+		bits[movie * words + (row >>> 6)] |= 1L << row;
+	}
+}
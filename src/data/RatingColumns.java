@@ -0,0 +1,194 @@
+package data;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A dense copy of the rating matrix with one float column per movie. Column i holds the
+ * rating every user row gave movie i, or NaN if the user did not rate it. Columns are padded
+ * to a multiple of {@link #LANES} floats so the distance kernel runs over whole blocks.
+ *
+ * Movies are addressed by vertex index 0...M-1, i.e. movie id - 1.
+ */
+public class RatingColumns {
+	public static final int LANES = 8;
+
+	private final int numMovies;
+	private final int numUsers;
+	private final int stride;
+	private final float[] columns;
+
+	/**
+	 * Lays out the ratings of every movie as a dense column
+	 * @param ratings The rating matrix
+	 */
+	public RatingColumns(RatingMatrix ratings){
+		numMovies = ratings.numMovies();
+		numUsers = ratings.numUsers();
+		stride = (numUsers + LANES - 1) / LANES * LANES;
+		long size = (long)numMovies * stride;
+		if(size > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Too many ratings for dense columns: " + size);
+		}
+		columns = new float[(int)size];
+		Arrays.fill(columns, Float.NaN);
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		float[] values = ratings.colRatings();
+		for(int i = 0; i < numMovies; i++){
+			for(int k = offsets[i]; k < offsets[i + 1]; k++){
+				columns[i * stride + raters[k]] = values[k];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of movies
+	 */
+	public int numMovies(){
+		return numMovies;
+	}
+
+	/**
+	 * Returns the number of users
+	 */
+	public int numUsers(){
+		return numUsers;
+	}
+
+	/**
+	 * Returns the rating the user in the given row gave the movie, or NaN
+	 */
+	public float rating(int movie, int row){
+		return columns[movie * stride + row];
+	}
+
+	/**
+	 * Sums |r_i - r_j| over the users who rated both movies. A difference involving an
+	 * unrated NaN entry is itself NaN and is masked to zero, so the loop has no branches
+	 * on the data. Eight independent lanes are accumulated side by side, which the JIT
+	 * can map onto SIMD registers.
+	 *
+	 * For half-star ratings every partial sum is exact, so the result does not depend on
+	 * the order of the additions.
+	 */
+	public float absDiffSum(int i, int j){
+		float[] c = columns;
+		int a = i * stride, b = j * stride;
+		float s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+		for(int k = 0; k < stride; k += LANES){
+			s0 += masked(Math.abs(c[a + k] - c[b + k]));
+			s1 += masked(Math.abs(c[a + k + 1] - c[b + k + 1]));
+			s2 += masked(Math.abs(c[a + k + 2] - c[b + k + 2]));
+			s3 += masked(Math.abs(c[a + k + 3] - c[b + k + 3]));
+			s4 += masked(Math.abs(c[a + k + 4] - c[b + k + 4]));
+			s5 += masked(Math.abs(c[a + k + 5] - c[b + k + 5]));
+			s6 += masked(Math.abs(c[a + k + 6] - c[b + k + 6]));
+			s7 += masked(Math.abs(c[a + k + 7] - c[b + k + 7]));
+		}
+		return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+	}
+
+	/**
+	 * Maps NaN to 0 and leaves every other value unchanged
+	 */
+	private static float masked(float d){
+		int bits = Float.floatToRawIntBits(d);
+		// All ones unless the magnitude bits are above infinity, i.e. d is NaN
+		int keep = ((bits & 0x7FFFFFFF) - 0x7F800001) >> 31;
+		return Float.intBitsToFloat(bits & keep);
+	}
+
+
+	/**
+	 * Times the rating-difference sums of the Option 4 distance with the original per-user
+	 * loop, a sparse merge join, the row buffer of analyzer.WeightedBuilder and the dense
+	 * kernel. The first rounds only warm up the JIT.
+	 */
+	public static void main(String[] args){
+		util.DataLoader loader = new util.DataLoader();
+		loader.loadData("./src/ml-latest-small/movies.csv", "./src/ml-latest-small/ratings.csv");
+		Map<Integer, Reviewer> users = loader.getReviewers();
+		RatingMatrix ratings = loader.getRatingMatrix();
+		RatingColumns dense = new RatingColumns(ratings);
+		int n = Math.min(200, ratings.numMovies());
+
+		double check = 0;
+		long loop = 0, sparse = 0, buffered = 0, kernel = 0;
+		float[] buffer = new float[ratings.numUsers()];
+		Arrays.fill(buffer, Float.NaN);
+		for(int round = 0; round < 8; round++){
+			double a = 0, b = 0, c = 0, d = 0;
+			long t0 = System.nanoTime();
+			// The loop used by makeWeightedMovieGraph
+			for(int i = 0; i < n; i++){
+				for(int j = 0; j < n; j++){
+					for(int k = 1; k <= users.size(); k++){
+						if(users.get(k).ratedMovie(i+1) && users.get(k).ratedMovie(j+1)){
+							a += Math.abs(users.get(k).getMovieRating(i+1) - users.get(k).getMovieRating(j+1)) / 4;
+						}
+					}
+				}
+			}
+			long t1 = System.nanoTime();
+			int[] offsets = ratings.colOffsets();
+			int[] raters = ratings.colUsers();
+			float[] values = ratings.colRatings();
+			for(int i = 0; i < n; i++){
+				for(int j = 0; j < n; j++){
+					int x = offsets[i], y = offsets[j];
+					while(x < offsets[i + 1] && y < offsets[j + 1]){
+						if(raters[x] < raters[y]){
+							x++;
+						}
+						else if(raters[x] > raters[y]){
+							y++;
+						}
+						else{
+							b += Math.abs((double)values[x++] - (double)values[y++]) / 4;
+						}
+					}
+				}
+			}
+			long t2 = System.nanoTime();
+			// The row buffer used by analyzer.WeightedBuilder
+			for(int i = 0; i < n; i++){
+				for(int x = offsets[i]; x < offsets[i + 1]; x++){
+					buffer[raters[x]] = values[x];
+				}
+				for(int j = 0; j < n; j++){
+					for(int y = offsets[j]; y < offsets[j + 1]; y++){
+						float r = buffer[raters[y]];
+						if(r == r){
+							d += Math.abs((double)r - (double)values[y]) / 4;
+						}
+					}
+				}
+				for(int x = offsets[i]; x < offsets[i + 1]; x++){
+					buffer[raters[x]] = Float.NaN;
+				}
+			}
+			long t3 = System.nanoTime();
+			for(int i = 0; i < n; i++){
+				for(int j = 0; j < n; j++){
+					c += dense.absDiffSum(i, j) / 4.0;
+				}
+			}
+			long t4 = System.nanoTime();
+			if(round >= 3){
+				loop += t1 - t0;
+				sparse += t2 - t1;
+				buffered += t3 - t2;
+				kernel += t4 - t3;
+			}
+			check = Math.abs(a - b) + Math.abs(a - c) + Math.abs(a - d);
+		}
+		long pairs = 5L * n * n;
+		System.out.println("Rating-difference sums over " + n + "x" + n + " movie pairs, " + ratings.numUsers() + " users");
+		System.out.println("Per-user loop: " + (loop / pairs) + " ns/pair");
+		System.out.println("Sparse merge: " + (sparse / pairs) + " ns/pair");
+		System.out.println("Row buffer: " + (buffered / pairs) + " ns/pair");
+		System.out.println("Dense kernel: " + (kernel / pairs) + " ns/pair");
+		System.out.println("Results agree: " + (check == 0));
+	}
+}
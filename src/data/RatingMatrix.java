@@ -0,0 +1,304 @@
+package data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact store for every rating in the data set. Ratings are kept once per user in
+ * compressed sparse row (CSR) form, with each row holding that user's movie ids in sorted
+ * order, and once per movie in compressed sparse column (CSC) form, with each column
+ * holding the rows of the users that rated the movie in sorted order.
+ *
+ * Users are numbered by row 0...U-1 in order of increasing user id. Movies are addressed
+ * by their (renumbered) ids 1...M. Ratings are stored as floats, which is exact for the
+ * half-star MovieLens scale; a rating that a float cannot hold exactly is rejected rather
+ * than rounded, so every rating reads back as it was added.
+ *
+ * The arrays returned by the accessors are the live backing arrays and must not be modified.
+ * {@link Reviewer} and {@link Movie} objects are thin views over the same arrays.
+ */
+public class RatingMatrix {
+	private final int[] userIds;
+	private final int[] rowOffsets;
+	private final int[] rowMovies;
+	private final float[] rowRatings;
+
+	private final int numMovies;
+	private final int[] colOffsets;
+	private final int[] colUsers;
+	private final float[] colRatings;
+
+	private RatingMatrix(int[] userIds, int[] rowOffsets, int[] rowMovies, float[] rowRatings, int numMovies) {
+		this.userIds = userIds;
+		this.rowOffsets = rowOffsets;
+		this.rowMovies = rowMovies;
+		this.rowRatings = rowRatings;
+		this.numMovies = numMovies;
+
+		// Transpose by counting sort. Rows are visited in order, so every column
+		// ends up sorted by row.
+		colOffsets = new int[numMovies + 1];
+		for(int movie : rowMovies) {
+			colOffsets[movie]++;
+		}
+		for(int m = 0; m < numMovies; m++) {
+			colOffsets[m + 1] += colOffsets[m];
+		}
+		colUsers = new int[rowMovies.length];
+		colRatings = new float[rowMovies.length];
+		int[] next = Arrays.copyOf(colOffsets, numMovies);
+		for(int row = 0; row < userIds.length; row++) {
+			for(int k = rowOffsets[row]; k < rowOffsets[row + 1]; k++) {
+				int slot = next[rowMovies[k] - 1]++;
+				colUsers[slot] = row;
+				colRatings[slot] = rowRatings[k];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of users with at least one rating
+	 */
+	public int numUsers() {
+		return userIds.length;
+	}
+
+	/**
+	 * Returns the number of movies, i.e. the largest movie id
+	 */
+	public int numMovies() {
+		return numMovies;
+	}
+
+	/**
+	 * Returns the total number of ratings
+	 */
+	public int numRatings() {
+		return rowMovies.length;
+	}
+
+	/**
+	 * Returns the user id stored in the given row
+	 */
+	public int userId(int row) {
+		return userIds[row];
+	}
+
+	/**
+	 * Returns the row of the given user or -1 if the user has no ratings
+	 */
+	public int userRow(int userId) {
+		int row = Arrays.binarySearch(userIds, userId);
+		return row < 0 ? -1 : row;
+	}
+
+	/**
+	 * Returns the rating a user gave a movie
+	 * @param row The user's row
+	 * @param movieId The movie id
+	 * @return The rating or -1 if the user has not rated the movie
+	 */
+	public float rating(int row, int movieId) {
+		int k = Arrays.binarySearch(rowMovies, rowOffsets[row], rowOffsets[row + 1], movieId);
+		return k < 0 ? -1 : rowRatings[k];
+	}
+
+	/**
+	 * Returns the user ids by row
+	 */
+	public int[] userIds() {
+		return userIds;
+	}
+
+	/**
+	 * Returns the CSR row offsets. The ratings of row r occupy [offsets[r], offsets[r+1]).
+	 */
+	public int[] rowOffsets() {
+		return rowOffsets;
+	}
+
+	/**
+	 * Returns the movie ids of every row, sorted within each row
+	 */
+	public int[] rowMovies() {
+		return rowMovies;
+	}
+
+	/**
+	 * Returns the ratings of every row, parallel to {@link #rowMovies()}
+	 */
+	public float[] rowRatings() {
+		return rowRatings;
+	}
+
+	/**
+	 * Returns the CSC column offsets. The ratings of movie m occupy [offsets[m-1], offsets[m]).
+	 */
+	public int[] colOffsets() {
+		return colOffsets;
+	}
+
+	/**
+	 * Returns the user rows of every column, sorted within each column
+	 */
+	public int[] colUsers() {
+		return colUsers;
+	}
+
+	/**
+	 * Returns the ratings of every column, parallel to {@link #colUsers()}
+	 */
+	public float[] colRatings() {
+		return colRatings;
+	}
+
+	/**
+	 * Points every movie's ratings at its column of this matrix
+	 * @param movies The movies keyed by id
+	 */
+	public void attach(Map<Integer, Movie> movies) {
+		for(Movie m : movies.values()) {
+			int id = m.getMovieId();
+			if(id >= 1 && id <= numMovies) {
+				m.ratings = new RatingSlice(colUsers, colRatings, colOffsets[id - 1], colOffsets[id], userIds);
+			}
+			else {
+				m.ratings = new RatingSlice();
+			}
+		}
+	}
+
+	/**
+	 * Converts a rating to the stored float
+	 * @param rating The rating
+	 * @return The same value as a float
+	 * @throws IllegalArgumentException if a float cannot hold the rating exactly
+	 */
+	static float toStored(double rating) {
+		float stored = (float)rating;
+		if(stored != rating) {
+			throw new IllegalArgumentException("Rating " + rating + " cannot be stored exactly as a float");
+		}
+		return stored;
+	}
+
+	/**
+	 * Creates a reviewer view for every row of this matrix
+	 * @return The reviewers keyed by user id
+	 */
+	public Map<Integer, Reviewer> reviewers() {
+		Map<Integer, Reviewer> reviewers = new HashMap<>();
+		for(int row = 0; row < userIds.length; row++) {
+			RatingSlice slice = new RatingSlice(rowMovies, rowRatings, rowOffsets[row], rowOffsets[row + 1], null);
+			reviewers.put(userIds[row], new Reviewer(userIds[row], slice));
+		}
+		return reviewers;
+	}
+
+
+	/**
+	 * Collects (user, movie, rating) triples and builds a RatingMatrix from them. If the
+	 * same user rates the same movie more than once, the last rating wins.
+	 */
+	public static class Builder {
+		private int[] users = new int[1024];
+		private int[] movies = new int[1024];
+		private float[] ratings = new float[1024];
+		private int size;
+
+		/**
+		 * Records a rating
+		 * @param userId The id of the user
+		 * @param movieId The (renumbered) movie id, starting at 1
+		 * @param rating The rating given by the user, which a float must hold exactly
+		 * @throws IllegalArgumentException if a float cannot hold the rating exactly
+		 */
+		public void add(int userId, int movieId, double rating) {
+			if(userId < 0 || movieId < 1 || rating < 0) {
+				throw new AssertionError("Inputs must be positive.");
+			}
+			if(size == users.length) {
+				users = Arrays.copyOf(users, size * 2);
+				movies = Arrays.copyOf(movies, size * 2);
+				ratings = Arrays.copyOf(ratings, size * 2);
+			}
+			users[size] = userId;
+			movies[size] = movieId;
+			ratings[size] = toStored(rating);
+			size++;
+		}
+
+		/**
+		 * Builds the matrix
+		 * @param numMovies The number of movies; every movie id must be at most this
+		 * @return The rating matrix
+		 */
+		public RatingMatrix build(int numMovies) {
+			// Rows are the distinct user ids in increasing order
+			int[] userIds = Arrays.copyOf(users, size);
+			Arrays.sort(userIds);
+			int distinct = 0;
+			for(int i = 0; i < userIds.length; i++) {
+				if(distinct == 0 || userIds[distinct - 1] != userIds[i]) {
+					userIds[distinct++] = userIds[i];
+				}
+			}
+			userIds = Arrays.copyOf(userIds, distinct);
+
+			// Stable counting sort by movie, then by row, leaves each row sorted by movie
+			// with repeated ratings in insertion order
+			int[] byMovie = countingSort(movies, identity(size), numMovies + 1);
+			int[] rows = new int[size];
+			for(int i = 0; i < size; i++) {
+				rows[i] = Arrays.binarySearch(userIds, users[i]);
+			}
+			int[] order = countingSort(rows, byMovie, distinct);
+
+			int[] rowOffsets = new int[distinct + 1];
+			int[] rowMovies = new int[size];
+			float[] rowRatings = new float[size];
+			int n = 0, prevRow = -1, prevMovie = -1;
+			for(int i = 0; i < size; i++) {
+				int t = order[i];
+				if(rows[t] == prevRow && movies[t] == prevMovie) {
+					rowRatings[n - 1] = ratings[t]; // a repeated rating replaces the earlier one
+					continue;
+				}
+				rowMovies[n] = movies[t];
+				rowRatings[n] = ratings[t];
+				n++;
+				rowOffsets[rows[t] + 1] = n;
+				prevRow = rows[t];
+				prevMovie = movies[t];
+			}
+			return new RatingMatrix(userIds, rowOffsets, Arrays.copyOf(rowMovies, n), Arrays.copyOf(rowRatings, n), numMovies);
+		}
+
+		private static int[] identity(int n) {
+			int[] order = new int[n];
+			for(int i = 0; i < n; i++) {
+				order[i] = i;
+			}
+			return order;
+		}
+
+		/**
+		 * Stably reorders the indices in order by their keys, which must lie in [0, range]
+		 */
+		private static int[] countingSort(int[] keys, int[] order, int range) {
+			int[] counts = new int[range + 2];
+			for(int i : order) {
+				counts[keys[i] + 1]++;
+			}
+			for(int k = 0; k <= range; k++) {
+				counts[k + 1] += counts[k];
+			}
+			int[] sorted = new int[order.length];
+			for(int i : order) {
+				sorted[counts[keys[i]]++] = i;
+			}
+			return sorted;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map view over one row or column of a {@link RatingMatrix}. The keys are a sorted
+ * range of a shared int array and the ratings the matching range of a float array.
+ * If a label table is given, the stored keys are indices into it and the map exposes
+ * the labels instead (e.g. user rows are exposed as user ids).
+ *
+ * Adding a rating copies the range into private arrays first, so a slice never
+ * modifies the shared matrix. Ratings that a float cannot hold exactly are rejected, as
+ * in {@link RatingMatrix}.
+ */
+class RatingSlice extends AbstractMap<Integer, Double> {
+	private int[] keys;
+	private float[] values;
+	private int from, to;
+	private int[] labels;
+	private boolean shared;
+
+	/**
+	 * Creates an empty slice
+	 */
+	RatingSlice() {
+		keys = new int[0];
+		values = new float[0];
+	}
+
+	/**
+	 * Creates a view over the range [from, to) of a matrix's arrays
+	 */
+	RatingSlice(int[] keys, float[] values, int from, int to, int[] labels) {
+		this.keys = keys;
+		this.values = values;
+		this.from = from;
+		this.to = to;
+		this.labels = labels;
+		shared = true;
+	}
+
+	/**
+	 * Returns the position of the id in the backing arrays or -1 if it is absent
+	 */
+	int indexOf(int id) {
+		int key = id;
+		if(labels != null) {
+			key = Arrays.binarySearch(labels, id);
+			if(key < 0) {
+				return -1;
+			}
+		}
+		int i = Arrays.binarySearch(keys, from, to, key);
+		return i < 0 ? -1 : i;
+	}
+
+	/**
+	 * Returns the rating stored for the id or -1 if it is absent
+	 */
+	double rating(int id) {
+		int i = indexOf(id);
+		return i < 0 ? -1 : values[i];
+	}
+
+	/**
+	 * Returns the id stored at a position of the backing arrays
+	 */
+	private int idAt(int i) {
+		return labels == null ? keys[i] : labels[keys[i]];
+	}
+
+	@Override
+	public int size() {
+		return to - from;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof Integer && indexOf((Integer)key) >= 0;
+	}
+
+	@Override
+	public Double get(Object key) {
+		if(!(key instanceof Integer)) {
+			return null;
+		}
+		int i = indexOf((Integer)key);
+		return i < 0 ? null : (double)values[i];
+	}
+
+	@Override
+	public Double put(Integer id, Double rating) {
+		// Checked before anything changes, so a rejected rating leaves the slice as it was
+		float stored = RatingMatrix.toStored(rating);
+		int i = indexOf(id);
+		if(i >= 0) {
+			detach();
+			i = indexOf(id);
+			double old = values[i];
+			values[i] = stored;
+			return old;
+		}
+		detach();
+		int pos = -Arrays.binarySearch(keys, 0, to, id) - 1;
+		if(to == keys.length) {
+			keys = Arrays.copyOf(keys, Math.max(4, to * 2));
+			values = Arrays.copyOf(values, keys.length);
+		}
+		System.arraycopy(keys, pos, keys, pos + 1, to - pos);
+		System.arraycopy(values, pos, values, pos + 1, to - pos);
+		keys[pos] = id;
+		values[pos] = stored;
+		to++;
+		return null;
+	}
+
+	@Override
+	public Set<Map.Entry<Integer, Double>> entrySet() {
+		return new AbstractSet<Map.Entry<Integer, Double>>() {
+			@Override
+			public Iterator<Map.Entry<Integer, Double>> iterator() {
+				return new Iterator<Map.Entry<Integer, Double>>() {
+					private int next = from;
+
+					@Override
+					public boolean hasNext() {
+						return next < to;
+					}
+
+					@Override
+					public Map.Entry<Integer, Double> next() {
+						if(next >= to) {
+							throw new NoSuchElementException();
+						}
+						Map.Entry<Integer, Double> entry = new SimpleImmutableEntry<>(idAt(next), (double)values[next]);
+						next++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return to - from;
+			}
+		};
+	}
+
+	/**
+	 * Copies the range into private arrays keyed by id so it can be modified
+	 */
+	private void detach() {
+		if(!shared) {
+			return;
+		}
+		int[] ownKeys = new int[to - from];
+		float[] ownValues = Arrays.copyOfRange(values, from, to);
+		for(int i = from; i < to; i++) {
+			ownKeys[i - from] = idAt(i);
+		}
+		keys = ownKeys;
+		values = ownValues;
+		to -= from;
+		from = 0;
+		labels = null;
+		shared = false;
+	}
+}
@@ -1,13 +1,11 @@
 package data;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.List;
-import java.util.ArrayList;
 
 /**
  * This class contains information for a single Netflix movie reviewer
  * including the reviewer id and a list of the movies (and ratings)
- * reviewed
+ * reviewed. Once the data is loaded the ratings are a view over the
+ * reviewer's row of the {@link RatingMatrix}.
  * 
  * @author alchambers
  *
@@ -17,7 +15,7 @@ public class Reviewer {
 
 	// The key is the movie id and the value is the rating
 	// given by the user
-	private Map<Integer, Double> listByMovieId;
+	private RatingSlice listByMovieId;
 
 
 	/**
@@ -25,11 +23,21 @@ public class Reviewer {
 	 */
 	public Reviewer(int id){
 		reviewerId = id;
-		listByMovieId = new HashMap<>();		
-	}	
+		listByMovieId = new RatingSlice();
+	}
+
+	/**
+	 * Create a reviewer whose ratings are a row of a rating matrix
+	 */
+	Reviewer(int id, RatingSlice ratings){
+		reviewerId = id;
+		listByMovieId = ratings;
+	}
 
 	/**
-	 * Add a movie to the reviewer's list of rated movies
+	 * Add a movie to the reviewer's list of rated movies. Ratings are stored as
+	 * floats, so the rating must be one a float holds exactly (e.g. any half-star
+	 * value); others throw an IllegalArgumentException.
 	 */
 	public void addMovie(int movieId, double rating){
 		listByMovieId.put(movieId, rating);
@@ -49,10 +57,7 @@ public class Reviewer {
 	 * if the reviewer never rated the movie
 	 */
 	public double getMovieRating(int movieId){
-		if(!listByMovieId.containsKey(movieId)){
-			return -1;
-		}
-		return listByMovieId.get(movieId);
+		return listByMovieId.rating(movieId);
 	}
 
 	/**
@@ -67,7 +72,7 @@ public class Reviewer {
 	 * otherwise
 	 */
 	public boolean ratedMovie(int movieId){		
-		return listByMovieId.containsKey(movieId);
+		return listByMovieId.indexOf(movieId) >= 0;
 	}
 
 	/**
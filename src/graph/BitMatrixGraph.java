@@ -0,0 +1,307 @@
+package graph;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A directed unweighted graph on the vertices 0...n-1 stored as an adjacency bit matrix:
+ * bit u of row v is set if the edge (v, u) exists. Rows are packed back to back in one
+ * long[], so the graph costs n^2/8 bytes however many edges it has, edgeExists is a single
+ * bit test and neighbours are found a 64-bit word at a time.
+ *
+ * That beats hash-set adjacency, which costs tens of bytes per edge, once more than about
+ * one pair in a hundred is an edge. {@link #create(int, double)} picks the representation
+ * from an estimated density.
+ */
+public class BitMatrixGraph extends RangeGraph {
+    /** The density above which {@link #create(int, double)} returns a bit matrix */
+    public static final double DENSITY_THRESHOLD = 0.01;
+
+    private final int words;
+    private final long[] bits;
+    private final int[] degrees;
+    private int numEdges = 0;
+
+    /**
+     * Creates a graph with the vertices 0...n-1 and no edges
+     * @param n The number of vertices
+     * @throws IllegalArgumentException if the matrix does not fit in an array
+     */
+    public BitMatrixGraph(int n) {
+        super(n);
+        words = (n + 63) >>> 6;
+        if (n < 0 || (long) n * words > Integer.MAX_VALUE) { throw new IllegalArgumentException("Too many vertices: " + n); }
+        bits = new long[n * words];
+        degrees = new int[n];
+    }
+
+    /**
+     * Creates an empty unweighted graph with the vertices 0...n-1 in the representation
+     * that suits the expected density: a bit matrix for dense graphs and a hash-set
+     * {@link Graph} for sparse ones
+     * @param n The number of vertices
+     * @param estimatedDensity The expected fraction of the n(n-1) possible edges
+     * @return The graph
+     */
+    public static GraphIfc<Integer> create(int n, double estimatedDensity) {
+        if (estimatedDensity > DENSITY_THRESHOLD) {
+            return new BitMatrixGraph(n);
+        }
+        Graph<Integer> g = new Graph<Integer>();
+        for (int v = 0; v < n; v++) {
+            g.addVertex(v);
+        }
+        return g;
+    }
+
+    /**
+     * Returns the number of edges in the graph
+     * @return The number of edges in the graph
+     */
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * Removes all edges from the graph. The vertices 0...n-1 remain.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(bits, 0);
+        Arrays.fill(degrees, 0);
+        numEdges = 0;
+    }
+
+    /**
+     * Adds the edge from u to v. Adding an existing edge has no effect.
+     *
+     * @param u A vertex in the graph
+     * @param v A vertex in the graph
+     * @throws IllegalArgumentException if either vertex does not occur in the graph.
+     */
+    @Override
+    public void addEdge(Integer u, Integer v) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        int w = u * words + (v >>> 6);
+        long bit = 1L << v;
+        if ((bits[w] & bit) == 0) {
+            bits[w] |= bit;
+            degrees[u]++;
+            numEdges++;
+        }
+    }
+
+    /**
+     * Returns the neighbors of v in increasing order as a view of its row
+     *
+     * @param v An existing node in the graph
+     * @return All neighbors of v in the graph.
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public Collection<Integer> getNeighbors(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        final int u = v;
+        return new AbstractCollection<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                NeighborCursor c = cursor();
+                c.reset(u);
+                return new Iterator<Integer>() {
+                    private boolean ready = c.next();
+
+                    @Override
+                    public boolean hasNext() {
+                        return ready;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (!ready) { throw new NoSuchElementException(); }
+                        int w = c.vertex();
+                        ready = c.next();
+                        return w;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && containsVertex((Integer) o) && edgeExists(u, (Integer) o);
+            }
+
+            @Override
+            public int size() {
+                return degrees[u];
+            }
+        };
+    }
+
+    /**
+     * Determines whether the edge from v to u exists with a single bit test
+     * @param v A node in the graph
+     * @param u A node in the graph
+     * @return True if the edge exists
+     * @throws IllegalArgumentException if either vertex does not occur in the graph
+     */
+    @Override
+    public boolean edgeExists(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        return (bits[v * words + (u >>> 6)] & (1L << u)) != 0;
+    }
+
+    /**
+     * Returns the out-degree of the vertex
+     * @param v A vertex in the graph
+     * @return The degree of the vertex
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public int degree(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        return degrees[v];
+    }
+
+    /**
+     * Every edge has weight 1
+     */
+    @Override
+    public double getEdgeWeight(Integer v, Integer u) {
+        return 1;
+    }
+
+    /**
+     * Calls the action with every neighbor of v in increasing order, skipping empty words
+     * @param v An existing node in the graph
+     * @param action Receives each neighbor
+     */
+    @Override
+    public void forEachNeighbor(int v, IntConsumer action) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        int base = v * words;
+        for (int w = 0; w < words; w++) {
+            long word = bits[base + w];
+            while (word != 0) {
+                action.accept((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    @Override
+    public void forEachEdge(int v, EdgeVisitor visitor) {
+        forEachNeighbor(v, u -> visitor.visit(u, 1));
+    }
+
+    /**
+     * Returns a cursor that scans a row word by word, so it never allocates
+     * @return A cursor that can be reset to any vertex
+     */
+    @Override
+    public NeighborCursor cursor() {
+        return new NeighborCursor() {
+            private int base, w, current;
+            private long word;
+
+            @Override
+            public void reset(int v) {
+                if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+                base = v * words;
+                w = 0;
+                word = words > 0 ? bits[base] : 0;
+            }
+
+            @Override
+            public boolean next() {
+                while (word == 0) {
+                    if (++w >= words) {
+                        return false;
+                    }
+                    word = bits[base + w];
+                }
+                current = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return true;
+            }
+
+            @Override
+            public int vertex() {
+                return current;
+            }
+
+            @Override
+            public double weight() {
+                return 1;
+            }
+        };
+    }
+
+    /**
+     * Computes the number of edges on a shortest path from the source to every vertex with
+     * a breadth-first search whose frontier and visited set are bitsets. Each level ORs the
+     * rows of the frontier vertices together and masks out the visited vertices, 64
+     * vertices per word operation.
+     * @param source The source vertex
+     * @return dist[v], or -1 if v cannot be reached
+     */
+    public int[] bfs(int source) {
+        if (source < 0 || source >= n) { throw new IllegalArgumentException(); }
+        int[] dist = new int[n];
+        bfs(source, dist, new long[words], new long[words], new long[words]);
+        return dist;
+    }
+
+    /**
+     * The search behind {@link #bfs(int)}, writing into buffers the caller can reuse
+     * @param source The source vertex
+     * @param dist Receives dist[v], or -1 if v cannot be reached
+     * @param visited A scratch bitset of (n + 63) / 64 words
+     * @param frontier A scratch bitset of (n + 63) / 64 words
+     * @param next A scratch bitset of (n + 63) / 64 words
+     */
+    void bfs(int source, int[] dist, long[] visited, long[] frontier, long[] next) {
+        Arrays.fill(dist, -1);
+        Arrays.fill(visited, 0);
+        Arrays.fill(frontier, 0);
+        visited[source >>> 6] |= 1L << source;
+        frontier[source >>> 6] |= 1L << source;
+        dist[source] = 0;
+        for (int level = 1; ; level++) {
+            Arrays.fill(next, 0);
+            for (int w = 0; w < words; w++) {
+                long word = frontier[w];
+                while (word != 0) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    int base = v * words;
+                    for (int x = 0; x < words; x++) {
+                        next[x] |= bits[base + x];
+                    }
+                }
+            }
+            boolean found = false;
+            for (int w = 0; w < words; w++) {
+                long word = next[w] & ~visited[w];
+                next[w] = word;
+                visited[w] |= word;
+                found |= word != 0;
+                while (word != 0) {
+                    dist[(w << 6) + Long.numberOfTrailingZeros(word)] = level;
+                    word &= word - 1;
+                }
+            }
+            if (!found) {
+                return;
+            }
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects edges from any number of threads and freezes them into an {@link IntGraph}.
+ * Graph and WeightedGraph keep their edges in plain hash maps with a plain edge counter,
+ * so builders that insert from several threads use this instead.
+ *
+ * Every task adds its edges through a {@link Sink} of its own, so adding an edge takes no
+ * lock and touches no shared memory except the striped edge counter. The sinks are
+ * registered with the builder when they are created and are merged by {@link #build()},
+ * which must only be called once every task has finished. Nothing is kept per thread, so
+ * no edges outlive the builder in the threads of a shared pool.
+ *
+ * The frozen graph does not depend on how the edges were spread across tasks: rows are
+ * sorted by target, and an edge added more than once keeps its smallest weight, as in
+ * {@link IntGraph.Builder}. The last weight would depend on how the threads interleaved.
+ */
+public class ConcurrentGraphBuilder {
+    private final int n;
+    private final boolean weighted;
+    private final LongAdder numEdges = new LongAdder();
+    private final ConcurrentLinkedQueue<Sink> sinks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a builder for a graph with the vertices 0...n-1
+     * @param n The number of vertices
+     * @param weighted If false, weights passed to addEdge are ignored and every edge has weight 1
+     */
+    public ConcurrentGraphBuilder(int n, boolean weighted) {
+        if (n < 0) { throw new IllegalArgumentException(); }
+        this.n = n;
+        this.weighted = weighted;
+    }
+
+    /**
+     * Creates a sink for one task's edges. A sink must not be shared between threads, but
+     * any number of sinks may add edges at once.
+     * @return The sink
+     */
+    public Sink newSink() {
+        Sink sink = new Sink();
+        sinks.add(sink);
+        return sink;
+    }
+
+    /**
+     * Returns the number of edges added so far, counting repeats
+     */
+    public long numEdgesAdded() {
+        return numEdges.sum();
+    }
+
+    /**
+     * Freezes the edges of every sink into a graph and releases the sinks, so the builder
+     * holds no edges afterwards. No sink may add edges while this runs.
+     * @return The graph
+     */
+    public IntGraph build() {
+        Sink[] parts = sinks.toArray(new Sink[0]);
+        sinks.clear();
+        int[] offsets = new int[n + 1];
+        long total = 0;
+        for (Sink part : parts) {
+            total += part.size;
+            for (int e = 0; e < part.size; e++) {
+                offsets[part.sources[e] + 1]++;
+            }
+        }
+        if (total > Integer.MAX_VALUE) { throw new IllegalStateException("Too many edges: " + total); }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        // Scatter into rows, keying each edge by its target and its position in the row
+        int[] next = Arrays.copyOf(offsets, n);
+        long[] keyed = new long[(int) total];
+        double[] values = weighted ? new double[(int) total] : null;
+        for (Sink part : parts) {
+            for (int e = 0; e < part.size; e++) {
+                int k = next[part.sources[e]]++;
+                keyed[k] = ((long) part.targets[e] << 32) | k;
+                if (weighted) {
+                    values[k] = part.weights[e];
+                }
+            }
+        }
+        int[] targets = new int[(int) total];
+        double[] weights = weighted ? new double[(int) total] : null;
+        int[] compacted = new int[n + 1];
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            Arrays.sort(keyed, offsets[v], offsets[v + 1]);
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int target = (int) (keyed[k] >>> 32);
+                double weight = weighted ? values[(int) keyed[k]] : 1;
+                if (count > compacted[v] && targets[count - 1] == target) {
+                    if (weighted) {
+                        weights[count - 1] = Math.min(weights[count - 1], weight);
+                    }
+                    continue;
+                }
+                targets[count] = target;
+                if (weighted) {
+                    weights[count] = weight;
+                }
+                count++;
+            }
+            compacted[v + 1] = count;
+        }
+        return new IntGraph(n, compacted, Arrays.copyOf(targets, count), weighted ? Arrays.copyOf(weights, count) : null);
+    }
+
+    /**
+     * The edges added by one task
+     */
+    public final class Sink {
+        private int[] sources = new int[64];
+        private int[] targets = new int[64];
+        private double[] weights = weighted ? new double[64] : null;
+        private int size;
+
+        private Sink() {
+        }
+
+        /**
+         * Adds an edge of weight 1
+         */
+        public void addEdge(int u, int v) {
+            addEdge(u, v, 1);
+        }
+
+        /**
+         * Adds a weighted edge
+         * @throws IllegalArgumentException if either vertex is not in 0...n-1
+         */
+        public void addEdge(int u, int v, double weight) {
+            if (u < 0 || u >= n || v < 0 || v >= n) { throw new IllegalArgumentException(); }
+            add(u, v, weight);
+            numEdges.increment();
+        }
+
+        private void add(int u, int v, double weight) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+                if (weighted) {
+                    weights = Arrays.copyOf(weights, size * 2);
+                }
+            }
+            sources[size] = u;
+            targets[size] = v;
+            if (weighted) {
+                weights[size] = weight;
+            }
+            size++;
+        }
+    }
+}
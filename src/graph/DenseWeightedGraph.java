@@ -0,0 +1,277 @@
+package graph;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A directed weighted graph on the vertices 0...n-1 that stores its adjacency matrix in one
+ * flat row-major array: the weight of the edge (v, u) lives at index v * n + u and absent
+ * edges are NaN. The graph costs 8n^2 bytes however many edges it has, which for a complete
+ * graph is a small fraction of a WeightedGraph's boxed hash-map entries, and a weight lookup
+ * is a single array read.
+ *
+ * Weights are doubles rather than floats so that every algorithm gives exactly the same
+ * results as on a WeightedGraph with the same edges.
+ */
+public class DenseWeightedGraph extends RangeGraph {
+    /** The density above which a matrix takes less memory than a WeightedGraph's hash maps */
+    public static final double DENSITY_THRESHOLD = 0.1;
+
+    private final double[] weights;
+    private final int[] degrees;
+    private int numEdges = 0;
+
+    /**
+     * Creates a graph with the vertices 0...n-1 and no edges
+     * @param n The number of vertices
+     * @throws IllegalArgumentException if the matrix does not fit in an array
+     */
+    public DenseWeightedGraph(int n) {
+        super(n);
+        if (n < 0 || (long) n * n > Integer.MAX_VALUE) { throw new IllegalArgumentException("Too many vertices: " + n); }
+        weights = new double[n * n];
+        Arrays.fill(weights, Double.NaN);
+        degrees = new int[n];
+    }
+
+    private DenseWeightedGraph(int n, double[] weights) {
+        super(n);
+        this.weights = weights;
+        degrees = new int[n];
+    }
+
+    /**
+     * Creates a graph that adopts a filled matrix, e.g. one computed in parallel
+     * @param n The number of vertices
+     * @param matrix The weight of every edge (v, u) at v * n + u, NaN where there is no
+     *               edge. The graph takes ownership of the array.
+     * @return The graph
+     * @throws IllegalArgumentException if the array does not have n^2 entries
+     */
+    public static DenseWeightedGraph fromMatrix(int n, double[] matrix) {
+        if ((long) n * n != matrix.length) { throw new IllegalArgumentException("Expected " + (long) n * n + " weights"); }
+        DenseWeightedGraph g = new DenseWeightedGraph(n, matrix);
+        for (int v = 0; v < n; v++) {
+            int base = v * n;
+            for (int u = 0; u < n; u++) {
+                if (!Double.isNaN(matrix[base + u])) {
+                    g.degrees[v]++;
+                }
+            }
+            g.numEdges += g.degrees[v];
+        }
+        return g;
+    }
+
+    /**
+     * Returns the number of edges in the graph
+     * @return The number of edges in the graph
+     */
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * Removes all edges from the graph. The vertices 0...n-1 remain.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(weights, Double.NaN);
+        Arrays.fill(degrees, 0);
+        numEdges = 0;
+    }
+
+    /**
+     * Adds an edge of weight 1 from u to v
+     * @param u A vertex in the graph
+     * @param v A vertex in the graph
+     * @throws IllegalArgumentException if either vertex does not occur in the graph
+     */
+    @Override
+    public void addEdge(Integer u, Integer v) {
+        addEdge(u, v, 1);
+    }
+
+    /**
+     * Adds an edge from u to v, replacing any existing weight
+     * @param u A vertex in the graph
+     * @param v A vertex in the graph
+     * @param weight The weight of the edge
+     * @throws IllegalArgumentException if either vertex does not occur in the graph or the weight is NaN
+     */
+    public void addEdge(int u, int v, double weight) {
+        if (!containsVertex(u) || !containsVertex(v) || Double.isNaN(weight)) { throw new IllegalArgumentException(); }
+        int index = u * n + v;
+        if (Double.isNaN(weights[index])) {
+            degrees[u]++;
+            numEdges++;
+        }
+        weights[index] = weight;
+    }
+
+    /**
+     * Returns the neighbors of v in increasing order as a view of its row of the matrix
+     *
+     * @param v An existing node in the graph
+     * @return All neighbors of v in the graph.
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public Collection<Integer> getNeighbors(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        final int row = v;
+        final int base = v * n;
+        return new AbstractCollection<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int next = skip(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < n;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (next >= n) { throw new NoSuchElementException(); }
+                        int u = next;
+                        next = skip(next + 1);
+                        return u;
+                    }
+
+                    private int skip(int u) {
+                        while (u < n && Double.isNaN(weights[base + u])) {
+                            u++;
+                        }
+                        return u;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && containsVertex((Integer) o) && !Double.isNaN(weights[base + (Integer) o]);
+            }
+
+            @Override
+            public int size() {
+                return degrees[row];
+            }
+        };
+    }
+
+    /**
+     * Determines whether the edge from v to u exists
+     * @param v A node in the graph
+     * @param u A node in the graph
+     * @return True if the edge exists
+     * @throws IllegalArgumentException if either vertex does not occur in the graph
+     */
+    @Override
+    public boolean edgeExists(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        return !Double.isNaN(weights[v * n + u]);
+    }
+
+    /**
+     * Returns the out-degree of the vertex
+     * @param v A vertex in the graph
+     * @return The degree of the vertex
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public int degree(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        return degrees[v];
+    }
+
+    /**
+     * Returns the weight of the edge from v to u
+     * @param v Starting node of the edge
+     * @param u Ending node of the edge
+     * @return weight W of the edge between v and u
+     * @throws IllegalArgumentException if the edge does not exist
+     */
+    @Override
+    public double getEdgeWeight(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        double weight = weights[v * n + u];
+        if (Double.isNaN(weight)) { throw new IllegalArgumentException("No edge from " + v + " to " + u); }
+        return weight;
+    }
+
+    @Override
+    public void forEachNeighbor(int v, IntConsumer action) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        int base = v * n;
+        for (int u = 0; u < n; u++) {
+            if (!Double.isNaN(weights[base + u])) {
+                action.accept(u);
+            }
+        }
+    }
+
+    @Override
+    public void forEachEdge(int v, EdgeVisitor visitor) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        int base = v * n;
+        for (int u = 0; u < n; u++) {
+            double weight = weights[base + u];
+            if (!Double.isNaN(weight)) {
+                visitor.visit(u, weight);
+            }
+        }
+    }
+
+    /**
+     * Returns a cursor that scans a row of the matrix, so it never allocates
+     * @return A cursor that can be reset to any vertex
+     */
+    @Override
+    public NeighborCursor cursor() {
+        return new NeighborCursor() {
+            private int base, u;
+
+            @Override
+            public void reset(int v) {
+                if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+                base = v * n;
+                u = -1;
+            }
+
+            @Override
+            public boolean next() {
+                while (++u < n) {
+                    if (!Double.isNaN(weights[base + u])) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public int vertex() {
+                return u;
+            }
+
+            @Override
+            public double weight() {
+                return weights[base + u];
+            }
+        };
+    }
+
+    /**
+     * Returns the matrix itself, for algorithms in this package that read it directly
+     */
+    double[] matrix() {
+        return weights;
+    }
+
+}
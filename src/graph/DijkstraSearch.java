@@ -0,0 +1,153 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra's algorithm from one source at a time, reusing its buffers from one source to the
+ * next. Weights are truncated to ints as in {@link GraphAlgorithms#floydWarshall}, so the
+ * distances from a source are that source's row of the Floyd-Warshall matrix, but only O(n)
+ * memory is held and the edges are streamed through a {@link NeighborCursor}.
+ */
+class DijkstraSearch {
+    private final int[] dist;
+    private final int[] settled;
+    private final Frontier frontier;
+    private final NeighborCursor neighbors;
+    private int count = 0;
+
+    /**
+     * Creates a search over a graph whose vertices are 0...n-1
+     */
+    DijkstraSearch(GraphIfc<Integer> g) {
+        int n = g.numVertices();
+        dist = new int[n];
+        settled = new int[n];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        // On a dense graph scanning the reached vertices for the nearest beats a heap, in
+        // which every relaxation costs O(log n)
+        long numEdges = g instanceof MappedGraph ? ((MappedGraph) g).numEdgesLong() : g.numEdges();
+        frontier = new Frontier(dist, numEdges * 16 <= (long) n * n);
+        neighbors = g.cursor();
+    }
+
+    /**
+     * Finds the shortest path lengths from a source
+     * @param source The source vertex
+     * @return The length of the shortest path to every vertex, Integer.MAX_VALUE if it cannot
+     * be reached. The array is reused by the next search.
+     * @throws IllegalArgumentException if an edge has a negative weight
+     */
+    int[] search(int source) {
+        // Only the vertices settled by the last search need resetting
+        for (int k = 0; k < count; k++) {
+            dist[settled[k]] = Integer.MAX_VALUE;
+        }
+        count = 0;
+        dist[source] = 0;
+        frontier.offer(source);
+        while (!frontier.isEmpty()) {
+            int u = frontier.poll();
+            settled[count++] = u;
+            neighbors.reset(u);
+            while (neighbors.next()) {
+                int weight = (int) neighbors.weight();
+                if (weight < 0) {
+                    throw new IllegalArgumentException("Dijkstra's algorithm needs non-negative weights, not " + neighbors.weight());
+                }
+                int v = neighbors.vertex();
+                long length = (long) dist[u] + weight;
+                if (length < dist[v]) {
+                    dist[v] = (int) length;
+                    frontier.offer(v);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * The reached but unsettled vertices of a Dijkstra search. Ordered, they form a binary
+     * min-heap by distance in which a vertex whose distance drops is moved up instead of being
+     * added again; unordered, they are a plain list that is scanned for the nearest vertex.
+     */
+    private static class Frontier {
+        private final int[] dist;
+        private final boolean ordered;
+        private final int[] heap;
+        private final int[] position;
+        private int size = 0;
+
+        Frontier(int[] dist, boolean ordered) {
+            this.dist = dist;
+            this.ordered = ordered;
+            heap = new int[dist.length];
+            position = new int[dist.length];
+            Arrays.fill(position, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Adds v, or moves it up if it is already in the heap
+         */
+        void offer(int v) {
+            int k = position[v] < 0 ? size++ : position[v];
+            while (ordered && k > 0) {
+                int parent = (k - 1) >>> 1;
+                int p = heap[parent];
+                if (dist[p] <= dist[v]) {
+                    break;
+                }
+                place(p, k);
+                k = parent;
+            }
+            place(v, k);
+        }
+
+        /**
+         * Removes and returns a vertex with the smallest distance
+         */
+        int poll() {
+            if (!ordered) {
+                int nearest = 0;
+                for (int k = 1; k < size; k++) {
+                    if (dist[heap[k]] < dist[heap[nearest]]) {
+                        nearest = k;
+                    }
+                }
+                int top = heap[nearest];
+                position[top] = -1;
+                if (nearest < --size) {
+                    place(heap[size], nearest);
+                }
+                return top;
+            }
+            int top = heap[0];
+            position[top] = -1;
+            int v = heap[--size];
+            int k = 0;
+            while (2 * k + 1 < size) {
+                int child = 2 * k + 1;
+                if (child + 1 < size && dist[heap[child + 1]] < dist[heap[child]]) {
+                    child++;
+                }
+                if (dist[heap[child]] >= dist[v]) {
+                    break;
+                }
+                place(heap[child], k);
+                k = child;
+            }
+            if (size > 0) {
+                place(v, k);
+            }
+            return top;
+        }
+
+        private void place(int v, int k) {
+            heap[k] = v;
+            position[v] = k;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package graph;
+
+/**
+ * Receives the out-edges of a vertex as primitives, see {@link GraphIfc#forEachEdge}
+ */
+@FunctionalInterface
+public interface EdgeVisitor {
+    /**
+     * Visits one edge
+     * @param target The end point of the edge
+     * @param weight The weight of the edge
+     */
+    void visit(int target, double weight);
+}
@@ -1,6 +1,7 @@
 package graph;
 
 import java.util.*;
+import java.util.function.IntConsumer;
 
 public class Graph<V> implements GraphIfc<V>{
 
@@ -116,6 +117,74 @@ public class Graph<V> implements GraphIfc<V>{
         return 1;
     }
 
+    /**
+     * Calls the action with every neighbor of v, reading the neighbor set directly
+     * @param v An existing node in the graph
+     * @param action Receives each neighbor
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public void forEachNeighbor(int v, IntConsumer action) {
+        Collection<V> neighbors = graph.get(v);
+        if(neighbors == null){ throw new IllegalArgumentException();}
+        for(V u : neighbors){
+            action.accept((Integer) u);
+        }
+    }
+
+    /**
+     * Calls the visitor with every neighbor of v and weight 1
+     * @param v An existing node in the graph
+     * @param visitor Receives each neighbor and the weight of the edge to it
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public void forEachEdge(int v, EdgeVisitor visitor) {
+        Collection<V> neighbors = graph.get(v);
+        if(neighbors == null){ throw new IllegalArgumentException();}
+        for(V u : neighbors){
+            visitor.visit((Integer) u, 1);
+        }
+    }
+
+    /**
+     * Returns a cursor that walks the neighbor sets directly and reports weight 1
+     * @return A cursor that can be reset to any vertex
+     */
+    @Override
+    public NeighborCursor cursor() {
+        return new NeighborCursor() {
+            private Iterator<V> neighbors;
+            private int current;
+
+            @Override
+            public void reset(int v) {
+                Collection<V> set = graph.get(v);
+                if(set == null){ throw new IllegalArgumentException();}
+                neighbors = set.iterator();
+            }
+
+            @Override
+            public boolean next() {
+                if(!neighbors.hasNext()){
+                    return false;
+                }
+                current = (Integer) neighbors.next();
+                return true;
+            }
+
+            @Override
+            public int vertex() {
+                return current;
+            }
+
+            @Override
+            public double weight() {
+                return 1;
+            }
+        };
+    }
+
     /**
      * Returns a string representation of the graph. The string representation shows all
      * vertices and edges in the graph.
@@ -1,13 +1,16 @@
 package graph;
 
-import data.Movie;
-
-import javax.xml.crypto.dom.DOMCryptoContext;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 public class GraphAlgorithms {
+    /** The side of a Floyd-Warshall tile; three tiles of ints fit in a core's L2 cache */
+    private static final int FW_BLOCK = 64;
+    /** Marks a missing path in Floyd-Warshall; two of them can be added without overflowing */
+    private static final int FW_INFINITY = Integer.MAX_VALUE / 2;
+
     /**
      * Finds the node with the maximum degree within a graph and return's it's degree
      *
@@ -17,7 +20,7 @@ public class GraphAlgorithms {
     public static int maxDegree(GraphIfc<Integer> g){
         int maxDegree = 0;
         for(Integer n: g.getVertices()){
-            int numNeighbors = g.getNeighbors(n).size();
+            int numNeighbors = g.degree(n);
             if (numNeighbors > maxDegree){
                 maxDegree = numNeighbors;
             }
@@ -29,46 +32,20 @@ public class GraphAlgorithms {
      *
      * @param g The graph to find the longestShortestPath of
      * @return returns the length of the longest shortest path in [0], the start node in [1] and the end node in [2]
+     * @see Ifub
      */
     public static int[] longestShortestPath(GraphIfc<Integer> g){
-        int[][] shortestPaths = floydWarshall(g);
-        int longestShortestPath = 0;
-        int start = -1;
-        int end = -1;
-        for(int i = 0; i < shortestPaths.length; i++){
-            for(int j = 0; j < shortestPaths[i].length; j++){
-                if(shortestPaths[i][j] > longestShortestPath && shortestPaths[i][j] != Integer.MAX_VALUE){
-                    longestShortestPath = shortestPaths[i][j];
-                    start = i;
-                    end = j;
-                }
-            }
-        }
-        int[] temp = new int[3];
-        temp[0] = longestShortestPath;
-        temp[1] = start;
-        temp[2] = end;
-        return temp;
+        return Ifub.longestShortestPath(g);
     }
     /**
      * Finds the average path length of every possible path on a graph
      *
      * @param g the graph to check
      * @return The average path length on the graph
+     * @see PathStatistics
      */
     public static double averagePathLength(GraphIfc<Integer> g){
-        int[][] shortestPaths = floydWarshall(g);
-        double totalPathLength = 0;
-        double totalPaths = 0;
-        for(int i = 0; i < shortestPaths.length; i++){
-            for(int j = 0; j < shortestPaths[i].length; j++){
-                if(shortestPaths[i][j] != Integer.MAX_VALUE){
-                    totalPathLength += shortestPaths[i][j];
-                    totalPaths += 1;
-                }
-            }
-        }
-        return totalPathLength / totalPaths;
+        return PathStatistics.of(g).averagePathLength();
     }
     /**
      * all nodes shortest path from source node
@@ -92,10 +69,14 @@ public class GraphAlgorithms {
             Q.push(dist[vertex], vertex);
         }
 
+        // One cursor walks the neighbors of every vertex, in the same order as getNeighbors
+        NeighborCursor neighbors = graph.cursor();
         while (!Q.isEmpty()) {
             int u = Q.pop();
 
-            for (int v : graph.getNeighbors(u)) {
+            neighbors.reset(u);
+            while (neighbors.next()) {
+                int v = neighbors.vertex();
                 int alt = Math.max(dist[u], dist[u] + 1);
                 if (alt < dist[v]) {
                     dist[v] = alt;
@@ -108,40 +89,125 @@ public class GraphAlgorithms {
         return prev;
     }
     /**
-     * All node shortest path algorithm
+     * weighted shortest path lengths from source node, the same as the source's row of
+     * {@link #floydWarshall} but found in O(n) memory, so it also works on a {@link MappedGraph}
+     *
+     * @param graph on which to find shortest paths; weights are truncated to ints and must not be negative
+     * @param source source node
+     * @return int array in which arr[i] is the length of the shortest path from source to i, or Integer.MAX_VALUE if there is none
+     */
+    public static int[] shortestPathLengths(GraphIfc<Integer> graph, int source) {
+        if (!graph.containsVertex(source)) { throw new IllegalArgumentException("No vertex " + source); }
+        return new DijkstraSearch(graph).search(source);
+    }
+    /**
+     * All node shortest path algorithm. The matrix is updated in place in tiles of
+     * FW_BLOCK x FW_BLOCK: for each block of intermediate vertices the diagonal tile is
+     * relaxed first, then the tiles in its row and column, then every other tile, and the
+     * tiles within each of the last two phases are independent so they run in parallel.
+     * Weights are truncated to ints, must not be negative, and path lengths must stay below
+     * Integer.MAX_VALUE / 2.
      *
      * @param graph graph in which to find the shortest path between nodes
      * @return int[][] in which arr[i][j] returns the shortest distance between nodes i and j
      */
     public static int[][] floydWarshall(GraphIfc<Integer> graph){
-        int[][] D = new int[graph.numVertices()][];
-        for(int i = 0; i < graph.numVertices(); i++){
-            D[i] = new int[graph.numVertices()];
-            Collection<Integer> neighbors = graph.getNeighbors(i);
-            for(int j = 0; j < graph.numVertices();j++){
-                if(i == j){ // getting from 1 to 1 requires 0 cost
-                    D[i][j] = 0;
-                }else if(neighbors.contains(j)){
-                    D[i][j] = (int)graph.getEdgeWeight(i,j); //Weight of Line
-                }else{
-                    D[i][j] = Integer.MAX_VALUE;
+        int n = graph.numVertices();
+        int[][] D = new int[n][];
+        // A dense matrix is read directly, absent edges being NaN
+        double[] matrix = graph instanceof DenseWeightedGraph ? ((DenseWeightedGraph) graph).matrix() : null;
+        for(int i = 0; i < n; i++){
+            int[] row = new int[n];
+            if(matrix != null){
+                for(int j = 0, base = i * n; j < n; j++){
+                    double weight = matrix[base + j];
+                    row[j] = weight != weight ? FW_INFINITY : (int)weight; //Weight of Line
                 }
+            } else {
+                Arrays.fill(row, FW_INFINITY);
+                graph.forEachEdge(i, (j, weight) -> row[j] = (int)weight); //Weight of Line
             }
+            row[i] = 0; // getting from 1 to 1 requires 0 cost
+            D[i] = row;
         }
-        int[][] prevs;
-        for(int k = 1; k < graph.numVertices(); k++){
-            prevs = D;
-            D = new int[graph.numVertices()][graph.numVertices()];
-            for(int i = 0; i < graph.numVertices(); i++){
-                for(int j = 0; j < graph.numVertices(); j++){
-                    if(prevs[i][k] != Integer.MAX_VALUE && prevs[k][j] != Integer.MAX_VALUE){
-                        D[i][j] = Math.min(prevs[i][k] + prevs[k][j], prevs[i][j]);
-                    }else{
-                        D[i][j] = prevs[i][j];
+        int blocks = (n + FW_BLOCK - 1) / FW_BLOCK;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for(int b = 0; b < blocks; b++){
+            final int k0 = b * FW_BLOCK, k1 = Math.min(n, k0 + FW_BLOCK), kb = b;
+            relax(D, k0, k1, k0, k1, k0, k1);
+            pool.invoke(new TileTask(0, blocks, t -> {
+                if(t != kb){
+                    int t0 = t * FW_BLOCK, t1 = Math.min(n, t0 + FW_BLOCK);
+                    relax(D, k0, k1, k0, k1, t0, t1);
+                    relax(D, k0, k1, t0, t1, k0, k1);
+                }
+            }));
+            pool.invoke(new TileTask(0, blocks, t -> {
+                if(t != kb){
+                    int i0 = t * FW_BLOCK, i1 = Math.min(n, i0 + FW_BLOCK);
+                    for(int j0 = 0; j0 < n; j0 += FW_BLOCK){
+                        if(j0 != k0){
+                            relax(D, k0, k1, i0, i1, j0, Math.min(n, j0 + FW_BLOCK));
+                        }
                     }
                 }
+            }));
+        }
+        for(int[] row : D){
+            for(int j = 0; j < n; j++){
+                if(row[j] >= FW_INFINITY){
+                    row[j] = Integer.MAX_VALUE;
+                }
             }
         }
         return D;
     }
+
+    /**
+     * Relaxes the tile of rows [i0, i1) and columns [j0, j1) through the intermediate
+     * vertices [k0, k1), in place
+     */
+    private static void relax(int[][] D, int k0, int k1, int i0, int i1, int j0, int j1){
+        for(int k = k0; k < k1; k++){
+            int[] rowK = D[k];
+            for(int i = i0; i < i1; i++){
+                int[] rowI = D[i];
+                int ik = rowI[k];
+                if(ik == FW_INFINITY){
+                    continue;
+                }
+                for(int j = j0; j < j1; j++){
+                    // A missing k -> j stays at least FW_INFINITY, so it never wins
+                    rowI[j] = Math.min(ik + rowK[j], rowI[j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a body for every tile index of a range, splitting the range across the pool
+     */
+    private static class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+        private final IntConsumer body;
+
+        TileTask(int from, int to, IntConsumer body){
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > 1){
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(from, mid, body), new TileTask(mid, to, body));
+                return;
+            }
+            if(from < to){
+                body.accept(from);
+            }
+        }
+    }
 }
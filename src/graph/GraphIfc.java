@@ -1,8 +1,10 @@
 package graph;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.IntConsumer;
 
 /**
  * An interface describing a Graph object. The graph can be either directed or undirected.
@@ -103,4 +105,74 @@ public interface GraphIfc<V> {
      */
     public String toString();
 
+    /**
+     * Calls the action with every neighbor of v. Like the other primitive traversal methods
+     * this is only meaningful for graphs whose vertices are Integers; implementations
+     * override it to walk their storage without boxing or iterators.
+     *
+     * @param v An existing node in the graph
+     * @param action Receives each neighbor
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @SuppressWarnings("unchecked")
+    public default void forEachNeighbor(int v, IntConsumer action) {
+        for (V u : getNeighbors((V) Integer.valueOf(v))) {
+            action.accept((Integer) u);
+        }
+    }
+
+    /**
+     * Calls the visitor with every out-edge of v and its weight
+     *
+     * @param v An existing node in the graph
+     * @param visitor Receives each neighbor and the weight of the edge to it
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @SuppressWarnings("unchecked")
+    public default void forEachEdge(int v, EdgeVisitor visitor) {
+        V source = (V) Integer.valueOf(v);
+        for (V u : getNeighbors(source)) {
+            visitor.visit((Integer) u, getEdgeWeight(source, u));
+        }
+    }
+
+    /**
+     * Returns a new cursor over the out-edges of the vertices of this graph. The cursor
+     * visits the neighbors in the same order as getNeighbors.
+     * @return A cursor that can be reset to any vertex
+     */
+    @SuppressWarnings("unchecked")
+    public default NeighborCursor cursor() {
+        return new NeighborCursor() {
+            private V source;
+            private Iterator<V> neighbors;
+            private V current;
+
+            @Override
+            public void reset(int v) {
+                source = (V) Integer.valueOf(v);
+                neighbors = getNeighbors(source).iterator();
+            }
+
+            @Override
+            public boolean next() {
+                if (!neighbors.hasNext()) {
+                    return false;
+                }
+                current = neighbors.next();
+                return true;
+            }
+
+            @Override
+            public int vertex() {
+                return (Integer) current;
+            }
+
+            @Override
+            public double weight() {
+                return getEdgeWeight(source, current);
+            }
+        };
+    }
+
 }
\ No newline at end of file
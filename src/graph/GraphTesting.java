@@ -14,5 +14,136 @@ public class GraphTesting {
         testing.addEdge(2, 3);
 
         System.out.println(Arrays.toString(GraphAlgorithms.dijkstrasAlgorithm(testing, 0)));
+
+        IntGraph copy = IntGraph.copyOf(testing);
+        IntGraph built = new IntGraph.Builder(4).addEdge(2, 3).addEdge(0, 1).addEdge(1, 2).addEdge(0, 1).build();
+        System.out.println(Arrays.toString(GraphAlgorithms.dijkstrasAlgorithm(copy, 0)));
+        System.out.println(copy.numEdges() + " " + built.numEdges() + " " + copy.toString().equals(built.toString()));
+        System.out.println(Arrays.deepEquals(GraphAlgorithms.floydWarshall(testing), GraphAlgorithms.floydWarshall(built)));
+
+        IntGraph weighted = new IntGraph.Builder(3).addEdge(0, 1, 2.5).addEdge(1, 2).addEdge(0, 1, 4).build();
+        System.out.println(weighted.getEdgeWeight(0, 1) + " " + weighted.getEdgeWeight(1, 2) + " " + weighted.edgeExists(1, 0));
+
+        // Four threads add overlapping slices of the same edges; the frozen graph must not depend on the split
+        ConcurrentGraphBuilder concurrent = new ConcurrentGraphBuilder(500, true);
+        IntGraph.Builder sequential = new IntGraph.Builder(500);
+        for (int e = 0; e < 20000; e++) {
+            sequential.addEdge(e % 500, e % 499, e);
+        }
+        Thread[] workers = new Thread[4];
+        for (int t = 0; t < workers.length; t++) {
+            int first = t * 5000;
+            workers[t] = new Thread(() -> {
+                ConcurrentGraphBuilder.Sink sink = concurrent.newSink();
+                for (int e = Math.max(0, first - 100); e < first + 5000; e++) {
+                    sink.addEdge(e % 500, e % 499, e);
+                }
+            });
+            workers[t].start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IntGraph frozen = concurrent.build();
+        IntGraph expected = sequential.build();
+        boolean same = frozen.toString().equals(expected.toString());
+        for (int v = 0; v < 500 && same; v++) {
+            for (int u : expected.getNeighbors(v)) {
+                same &= frozen.getEdgeWeight(v, u) == expected.getEdgeWeight(v, u);
+            }
+        }
+        System.out.println("Concurrent builder: " + same + " (" + concurrent.numEdgesAdded() + " added, " + frozen.numEdges() + " distinct)");
+
+        // Both builders keep the smallest weight of an edge added more than once, in any order
+        ConcurrentGraphBuilder repeatedConcurrent = new ConcurrentGraphBuilder(50, true);
+        IntGraph.Builder repeatedSequential = new IntGraph.Builder(50);
+        double[][] smallest = new double[50][40];
+        for (double[] row : smallest) {
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+        }
+        for (int e = 0; e < 10000; e++) {
+            double weight = (e * 7919) % 10007;
+            repeatedSequential.addEdge(e % 50, e % 40, weight);
+            smallest[e % 50][e % 40] = Math.min(smallest[e % 50][e % 40], weight);
+        }
+        java.util.stream.IntStream.range(0, 10).parallel().forEach(t -> {
+            ConcurrentGraphBuilder.Sink sink = repeatedConcurrent.newSink();
+            for (int e = t; e < 10000; e += 10) {
+                sink.addEdge(e % 50, e % 40, (e * 7919) % 10007);
+            }
+        });
+        boolean smallestKept = true;
+        for (IntGraph repeated : new IntGraph[]{repeatedSequential.build(), repeatedConcurrent.build()}) {
+            for (int v = 0; v < 50; v++) {
+                for (int u = 0; u < 40; u++) {
+                    smallestKept &= repeated.edgeExists(v, u) == (smallest[v][u] != Double.POSITIVE_INFINITY)
+                            && (!repeated.edgeExists(v, u) || repeated.getEdgeWeight(v, u) == smallest[v][u]);
+                }
+            }
+        }
+        System.out.println("Repeated edges keep the smallest weight: " + smallestKept);
+
+        // The tiled Floyd-Warshall against the textbook triple loop, on a sparse random graph
+        // whose size is not a multiple of the tile and which has unreachable pairs
+        java.util.Random random = new java.util.Random(42);
+        IntGraph.Builder sparse = new IntGraph.Builder(300);
+        for (int e = 0; e < 900; e++) {
+            sparse.addEdge(random.nextInt(290), random.nextInt(300), 1 + random.nextInt(50));
+        }
+        IntGraph randomGraph = sparse.build();
+        int[][] naive = new int[300][300];
+        for (int i = 0; i < 300; i++) {
+            Arrays.fill(naive[i], Integer.MAX_VALUE);
+            for (int u : randomGraph.getNeighbors(i)) {
+                naive[i][u] = (int) randomGraph.getEdgeWeight(i, u);
+            }
+            naive[i][i] = 0;
+        }
+        for (int k = 0; k < 300; k++) {
+            for (int i = 0; i < 300; i++) {
+                for (int j = 0; j < 300; j++) {
+                    if (naive[i][k] != Integer.MAX_VALUE && naive[k][j] != Integer.MAX_VALUE) {
+                        naive[i][j] = Math.min(naive[i][j], naive[i][k] + naive[k][j]);
+                    }
+                }
+            }
+        }
+        System.out.println("Tiled Floyd-Warshall: " + Arrays.deepEquals(naive, GraphAlgorithms.floydWarshall(randomGraph)));
+        boolean rows = true;
+        for (int i = 0; i < 300; i++) {
+            rows &= Arrays.equals(naive[i], GraphAlgorithms.shortestPathLengths(randomGraph, i));
+        }
+        System.out.println("Single-source Dijkstra: " + rows);
+
+        // iFUB against the all-pairs diameter, on undirected random graphs with several
+        // components, where ties between longest paths are common. Preferential attachment
+        // gives them the skewed degrees of real graphs, on which iFUB rarely falls back.
+        boolean ifub = true;
+        for (int trial = 0; trial < 50; trial++) {
+            int n = 100 + random.nextInt(400);
+            IntGraph.Builder undirected = new IntGraph.Builder(n);
+            java.util.List<Integer> ends = new java.util.ArrayList<>();
+            for (int v = 1; v < n; v++) {
+                if (random.nextInt(10) == 0) {
+                    continue; // starts a new component
+                }
+                int u = ends.isEmpty() ? random.nextInt(v) : ends.get(random.nextInt(ends.size()));
+                undirected.addEdge(u, v).addEdge(v, u);
+                ends.add(u);
+                ends.add(v);
+            }
+            for (int e = n / 8; e > 0; e--) {
+                int u = random.nextInt(n), v = random.nextInt(n);
+                undirected.addEdge(u, v).addEdge(v, u);
+            }
+            IntGraph g = undirected.build();
+            PathStatistics stats = PathStatistics.bySource(g);
+            ifub &= Arrays.equals(new int[]{stats.diameter(), stats.start(), stats.end()}, Ifub.longestShortestPath(g));
+        }
+        System.out.println("iFUB diameter: " + ifub);
     }
 }
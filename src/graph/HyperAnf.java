@@ -0,0 +1,327 @@
+package graph;
+
+import util.Hashing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Approximates the neighbourhood function of a graph, N(t) = the number of ordered pairs
+ * (x, y) such that y can be reached from x in at most t steps, with HyperANF: every vertex
+ * holds a HyperLogLog counter of the vertices it reaches, and a round replaces each counter
+ * by its union with the counters of the vertex's out-neighbours. After round t the counters
+ * cover the balls of radius t, so summing their estimates gives N(t), and the rounds stop
+ * once no counter changes.
+ *
+ * Each counter has 2^log2m byte registers, so memory is 2n * 2^log2m bytes whatever the
+ * number of edges, and a round costs O((n + m) * 2^log2m). The relative standard error of
+ * each N(t) is about 1.04 / sqrt(2^log2m). The estimate is repeated with independent hash
+ * functions and the spread of the runs gives the error bars of the derived statistics.
+ *
+ * The average path length counts every vertex with itself, like
+ * {@link GraphAlgorithms#averagePathLength}.
+ */
+public class HyperAnf {
+    /** The default number of register index bits, 256 registers and about 6.5% error per run */
+    public static final int DEFAULT_LOG2M = 8;
+    /** The default number of independent runs */
+    public static final int DEFAULT_RUNS = 8;
+    /** The fraction of reachable pairs that the effective diameter covers */
+    public static final double EFFECTIVE_FRACTION = 0.9;
+
+    private final int log2m;
+    private final int runs;
+
+    /**
+     * Creates an estimator with the default precision and number of runs
+     */
+    public HyperAnf() {
+        this(DEFAULT_LOG2M, DEFAULT_RUNS);
+    }
+
+    /**
+     * Creates an estimator
+     * @param log2m The log2 of the number of registers of each counter, 4 to 16
+     * @param runs The number of independent runs; error bars need at least 2
+     */
+    public HyperAnf(int log2m, int runs) {
+        if (log2m < 4 || log2m > 16 || runs < 1) { throw new IllegalArgumentException("log2m must be 4 to 16 and runs positive"); }
+        this.log2m = log2m;
+        this.runs = runs;
+    }
+
+    /**
+     * Returns the largest precision whose registers for n vertices fit in one array
+     * @param n The number of vertices
+     * @return The largest log2m, at most 16, such that n * 2^log2m fits in an array; below
+     * 4 if no precision does
+     */
+    public static int maxLog2m(int n) {
+        int log2m = 16;
+        while (log2m > 0 && (long) n << log2m > Integer.MAX_VALUE) {
+            log2m--;
+        }
+        return log2m;
+    }
+
+    /**
+     * Returns the relative standard error of a single counter, and so of each N(t) of one run
+     */
+    public double relativeStandardError() {
+        return 1.04 / Math.sqrt(1 << log2m);
+    }
+
+    /**
+     * Estimates the neighbourhood function and the statistics derived from it
+     * @param g A graph whose vertices are 0...n-1; edge weights are ignored
+     * @return The estimate
+     * @throws IllegalArgumentException if log2m exceeds {@link #maxLog2m} of the graph
+     */
+    public Estimate estimate(GraphIfc<Integer> g) {
+        double[][] functions = new double[runs][];
+        for (int r = 0; r < runs; r++) {
+            functions[r] = neighbourhoodFunction(g, Hashing.mix(0x9E3779B97F4A7C15L * (r + 1)));
+        }
+        return new Estimate(functions, relativeStandardError());
+    }
+
+    /**
+     * Returns the average path length over the reachable pairs described by a neighbourhood
+     * function, counting each vertex with itself
+     * @param pairs pairs[t] = the number of pairs at distance at most t, ending at the maximum
+     * @return The average path length
+     */
+    public static double averagePathLength(double[] pairs) {
+        double total = 0;
+        for (int t = 1; t < pairs.length; t++) {
+            total += t * (pairs[t] - pairs[t - 1]);
+        }
+        return total / pairs[pairs.length - 1];
+    }
+
+    /**
+     * Returns the distance within which the given fraction of the reachable pairs lie,
+     * interpolated linearly between whole distances
+     * @param pairs pairs[t] = the number of pairs at distance at most t, ending at the maximum
+     * @param fraction The fraction, e.g. 0.9
+     * @return The effective diameter
+     */
+    public static double effectiveDiameter(double[] pairs, double fraction) {
+        double target = fraction * pairs[pairs.length - 1];
+        if (pairs[0] >= target) {
+            return 0;
+        }
+        int t = 1;
+        while (pairs[t] < target) {
+            t++;
+        }
+        return t - 1 + (target - pairs[t - 1]) / (pairs[t] - pairs[t - 1]);
+    }
+
+    /**
+     * The neighbourhood function averaged over the runs, with the statistics of each run
+     */
+    public static class Estimate {
+        private final double[] pairs;
+        private final double[] averages;
+        private final double[] effectiveDiameters;
+        private final int rounds;
+        private final double relativeError;
+
+        Estimate(double[][] functions, double relativeError) {
+            this.relativeError = relativeError;
+            int length = 0;
+            for (double[] f : functions) {
+                length = Math.max(length, f.length);
+            }
+            rounds = length - 1;
+            pairs = new double[length];
+            averages = new double[functions.length];
+            effectiveDiameters = new double[functions.length];
+            for (int r = 0; r < functions.length; r++) {
+                double[] f = functions[r];
+                for (int t = 0; t < length; t++) {
+                    pairs[t] += f[Math.min(t, f.length - 1)] / functions.length;
+                }
+                averages[r] = HyperAnf.averagePathLength(f);
+                effectiveDiameters[r] = HyperAnf.effectiveDiameter(f, EFFECTIVE_FRACTION);
+            }
+        }
+
+        /**
+         * Returns the estimated number of pairs within each distance, pairs[t] for t = 0...rounds
+         */
+        public double[] reachablePairs() {
+            return pairs.clone();
+        }
+
+        /**
+         * Returns the relative standard error of each run's pairs[t]
+         */
+        public double reachablePairsError() {
+            return relativeError;
+        }
+
+        /**
+         * Returns the number of rounds until no counter changed, which is at most the
+         * diameter and usually equal to it
+         */
+        public int rounds() {
+            return rounds;
+        }
+
+        public double averagePathLength() {
+            return mean(averages);
+        }
+
+        /**
+         * Returns the standard error of the average path length over the runs
+         */
+        public double averagePathLengthError() {
+            return standardError(averages);
+        }
+
+        public double effectiveDiameter() {
+            return mean(effectiveDiameters);
+        }
+
+        /**
+         * Returns the standard error of the effective diameter over the runs
+         */
+        public double effectiveDiameterError() {
+            return standardError(effectiveDiameters);
+        }
+
+        private static double mean(double[] values) {
+            double sum = 0;
+            for (double v : values) {
+                sum += v;
+            }
+            return sum / values.length;
+        }
+
+        /**
+         * The sample standard deviation over sqrt(runs), or NaN for a single run
+         */
+        private static double standardError(double[] values) {
+            if (values.length < 2) {
+                return Double.NaN;
+            }
+            double mean = mean(values), squares = 0;
+            for (double v : values) {
+                squares += (v - mean) * (v - mean);
+            }
+            return Math.sqrt(squares / (values.length - 1) / values.length);
+        }
+    }
+
+    /**
+     * Runs HyperANF once
+     * @return pairs[t] for t = 0 until the round in which no counter changed
+     */
+    private double[] neighbourhoodFunction(GraphIfc<Integer> g, long seed) {
+        int n = g.numVertices();
+        int m = 1 << log2m;
+        if (log2m > maxLog2m(n)) { throw new IllegalArgumentException("Too many vertices for 2^" + log2m + " registers: " + n); }
+        byte[] current = new byte[n * m];
+        byte[] next = new byte[n * m];
+        for (int v = 0; v < n; v++) {
+            long hash = Hashing.mix(seed ^ v);
+            int register = (int) (hash >>> (64 - log2m));
+            int rank = Math.min(Long.numberOfLeadingZeros(hash << log2m), 64 - log2m) + 1;
+            current[v * m + register] = (byte) rank;
+        }
+        double[] pairs = new double[16];
+        int length = 0;
+        pairs[length++] = estimateSum(current, n, m);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int grain = Math.max(1, n / (pool.getParallelism() * 8));
+        while (pool.invoke(new RoundTask(g, current, next, 0, n, grain))) {
+            byte[] swap = current;
+            current = next;
+            next = swap;
+            if (length == pairs.length) {
+                pairs = Arrays.copyOf(pairs, length * 2);
+            }
+            // A counter only grows, so clamp estimator noise that would make N(t) decrease
+            pairs[length] = Math.max(pairs[length - 1], estimateSum(current, n, m));
+            length++;
+        }
+        return Arrays.copyOf(pairs, length);
+    }
+
+    /**
+     * Sums the HyperLogLog estimates of all counters
+     */
+    private double estimateSum(byte[] registers, int n, int m) {
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double total = 0;
+        for (int v = 0; v < n; v++) {
+            double sum = 0;
+            int zeros = 0;
+            for (int k = v * m, end = k + m; k < end; k++) {
+                sum += Math.scalb(1.0, -registers[k]);
+                if (registers[k] == 0) {
+                    zeros++;
+                }
+            }
+            double estimate = alpha * m * m / sum;
+            if (estimate <= 2.5 * m && zeros > 0) {
+                estimate = m * Math.log((double) m / zeros); // linear counting for small sets
+            }
+            total += estimate;
+        }
+        return total;
+    }
+
+
+    /**
+     * Computes the next counters of a range of vertices; returns true if any changed
+     */
+    private class RoundTask extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 1L;
+        private final GraphIfc<Integer> g;
+        private final byte[] current, next;
+        private final int from, to, grain;
+
+        RoundTask(GraphIfc<Integer> g, byte[] current, byte[] next, int from, int to, int grain) {
+            this.g = g;
+            this.current = current;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (to - from > grain) {
+                int mid = (from + to) >>> 1;
+                RoundTask later = new RoundTask(g, current, next, mid, to, grain);
+                later.fork();
+                boolean changed = new RoundTask(g, current, next, from, mid, grain).compute();
+                return later.join() | changed;
+            }
+            int m = 1 << log2m;
+            boolean changed = false;
+            NeighborCursor neighbors = g.cursor();
+            for (int v = from; v < to; v++) {
+                int base = v * m;
+                System.arraycopy(current, base, next, base, m);
+                neighbors.reset(v);
+                while (neighbors.next()) {
+                    int other = neighbors.vertex() * m;
+                    for (int k = 0; k < m; k++) {
+                        byte r = current[other + k];
+                        if (r > next[base + k]) {
+                            next[base + k] = r;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the exact diameter of an undirected unweighted graph with iFUB (iterative fringe
+ * upper bound), which on real-world graphs takes a handful of breadth-first searches instead
+ * of one per vertex. In each connected component a double sweep gives a lower bound and a
+ * central vertex u. The vertices at distance i from u, the fringe, are then searched from
+ * the farthest level inwards, each level in parallel: two vertices both within i - 1 of u
+ * are at most 2(i - 1) apart, so the search stops once the lower bound reaches that.
+ *
+ * Every search also tightens bounds on the eccentricity of each vertex it reaches, and these
+ * pick out the first longest path in row-major order with few more searches, so the result
+ * is the same path that {@link PathStatistics} reports. Directed and weighted graphs, and
+ * graphs on which the bounds have not met after n / 16 searches' worth of work, fall back to
+ * {@link PathStatistics#of}.
+ */
+public class Ifub {
+    /** iFUB may visit n^2 / BUDGET_DIVISOR vertices before the all-pairs search is cheaper */
+    private static final int BUDGET_DIVISOR = 16;
+
+    private final GraphIfc<Integer> g;
+    private final int n;
+    private final long budget;
+    private final Bounds bounds;
+    private long work = 0;
+
+    private Ifub(GraphIfc<Integer> g) {
+        this.g = g;
+        n = g.numVertices();
+        budget = (long) n * Math.max(1, n / BUDGET_DIVISOR);
+        bounds = new Bounds();
+    }
+
+    /**
+     * Finds the longest shortest path of a graph
+     * @param g A graph whose vertices are 0...n-1
+     * @return The length of the path in [0], its start vertex in [1] and its end vertex in
+     * [2], with -1 for both vertices if no two vertices are connected
+     */
+    public static int[] longestShortestPath(GraphIfc<Integer> g) {
+        if (PathStatistics.isUnweighted(g) && isUndirected(g)) {
+            int[] path = new Ifub(g).search();
+            if (path != null) {
+                return path;
+            }
+        }
+        PathStatistics stats = PathStatistics.of(g);
+        return new int[]{stats.diameter(), stats.start(), stats.end()};
+    }
+
+    /**
+     * Returns true if every edge of the graph has a reverse edge
+     * @param g A graph whose vertices are 0...n-1
+     * @return True if the graph is undirected
+     */
+    public static boolean isUndirected(GraphIfc<Integer> g) {
+        NeighborCursor neighbors = g.cursor();
+        for (int v = 0; v < g.numVertices(); v++) {
+            neighbors.reset(v);
+            while (neighbors.next()) {
+                if (!g.edgeExists(neighbors.vertex(), v)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs iFUB on every component and then finds the first longest path
+     * @return The path as for longestShortestPath, or null if the budget ran out
+     */
+    private int[] search() {
+        Search first = new Search(), second = new Search();
+        boolean[] done = new boolean[n];
+        for (int root = 0; root < n; root++) {
+            if (!done[root] && !component(root, first, second, done)) {
+                return null;
+            }
+        }
+        int diameter = bounds.longest;
+        if (diameter == 0) {
+            return new int[]{0, -1, -1};
+        }
+        // Only a vertex whose eccentricity may still be the diameter can start the first path
+        for (int v = 0; v < n; v++) {
+            if (bounds.upper[v] < diameter) {
+                continue;
+            }
+            if (work > budget) {
+                return null;
+            }
+            first.bfs(v);
+            work += first.tail;
+            bounds.add(first);
+            if (first.eccentricity == diameter) {
+                int end = n;
+                for (int k = first.tail - 1; k >= 0 && first.dist[first.queue[k]] == diameter; k--) {
+                    end = Math.min(end, first.queue[k]);
+                }
+                return new int[]{diameter, v, end};
+            }
+        }
+        throw new IllegalStateException("No vertex has the eccentricity " + diameter);
+    }
+
+    /**
+     * Raises the lower bound to the diameter of the component of root
+     * @return False if the budget ran out
+     */
+    private boolean component(int root, Search first, Search second, boolean[] done) {
+        first.bfs(root);
+        bounds.add(first);
+        int size = first.tail;
+        for (int k = 0; k < size; k++) {
+            done[first.queue[k]] = true;
+        }
+        work += size;
+        if (2 * first.eccentricity <= bounds.longest) {
+            return true; // no two vertices of the component are further apart
+        }
+        // Double sweep: a vertex a farthest from the root, a vertex b farthest from a, and
+        // the middle u of a shortest path between them
+        first.bfs(first.farthest());
+        bounds.add(first);
+        second.bfs(first.farthest());
+        bounds.add(second);
+        work += 2L * size;
+        int length = first.eccentricity, u = -1;
+        for (int k = 0; u < 0; k++) {
+            int x = first.queue[k];
+            if (first.dist[x] == length / 2 && second.dist[x] == length - length / 2) {
+                u = x;
+            }
+        }
+        first.bfs(u);
+        bounds.add(first);
+        work += size;
+        // The search queue lists the component level by level
+        int[] order = Arrays.copyOf(first.queue, size);
+        int end = size;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (int i = first.eccentricity; i > 0 && bounds.longest < 2 * i; i--) {
+            int start = end;
+            while (start > 0 && first.dist[order[start - 1]] == i) {
+                start--;
+            }
+            long fringe = (long) (end - start) * size;
+            if (work + fringe > budget) {
+                return false;
+            }
+            work += fringe;
+            int grain = Math.max(1, (end - start) / (pool.getParallelism() * 8));
+            bounds.merge(pool.invoke(new FringeTask(order, start, end, grain)));
+            end = start;
+        }
+        return true;
+    }
+
+    /**
+     * An upper bound on the eccentricity of every vertex, and the largest eccentricity found
+     * so far, which is a lower bound on the diameter
+     */
+    private class Bounds {
+        private final int[] upper = new int[n];
+        private int longest = 0;
+
+        Bounds() {
+            Arrays.fill(upper, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Tightens the bounds of the vertices a search reached: a vertex at distance d from
+         * a source of eccentricity e has an eccentricity of at most d + e
+         */
+        void add(Search s) {
+            int e = s.eccentricity;
+            for (int k = 0; k < s.tail; k++) {
+                int v = s.queue[k];
+                upper[v] = Math.min(upper[v], s.dist[v] + e);
+            }
+            longest = Math.max(longest, e);
+        }
+
+        Bounds merge(Bounds other) {
+            for (int v = 0; v < n; v++) {
+                upper[v] = Math.min(upper[v], other.upper[v]);
+            }
+            longest = Math.max(longest, other.longest);
+            return this;
+        }
+    }
+
+    /**
+     * A breadth-first search whose distances and queue stay readable until the next search
+     */
+    private class Search {
+        private final int[] dist = new int[n];
+        private final int[] queue = new int[n];
+        private final NeighborCursor neighbors = g.cursor();
+        private int tail = 0;
+        private int eccentricity = 0;
+
+        Search() {
+            Arrays.fill(dist, -1);
+        }
+
+        void bfs(int source) {
+            // Only the vertices of the last search need resetting
+            for (int k = 0; k < tail; k++) {
+                dist[queue[k]] = -1;
+            }
+            int head = 0;
+            tail = 0;
+            dist[source] = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                int u = queue[head++];
+                neighbors.reset(u);
+                while (neighbors.next()) {
+                    int v = neighbors.vertex();
+                    if (dist[v] < 0) {
+                        dist[v] = dist[u] + 1;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            eccentricity = dist[queue[tail - 1]];
+        }
+
+        /**
+         * Returns a vertex at the greatest distance from the last source
+         */
+        int farthest() {
+            return queue[tail - 1];
+        }
+    }
+
+    /**
+     * Searches from a range of fringe vertices, each worker with its own bounds
+     */
+    private class FringeTask extends RecursiveTask<Bounds> {
+        private static final long serialVersionUID = 1L;
+        private final int[] order;
+        private final int from, to, grain;
+
+        FringeTask(int[] order, int from, int to, int grain) {
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Bounds compute() {
+            if (to - from > grain) {
+                int mid = (from + to) >>> 1;
+                FringeTask later = new FringeTask(order, mid, to, grain);
+                later.fork();
+                Bounds found = new FringeTask(order, from, mid, grain).compute();
+                return found.merge(later.join());
+            }
+            Bounds found = new Bounds();
+            Search s = new Search();
+            for (int k = from; k < to; k++) {
+                s.bfs(order[k]);
+                found.add(s);
+            }
+            return found;
+        }
+    }
+}
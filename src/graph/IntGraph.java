@@ -0,0 +1,404 @@
+package graph;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable directed graph on the vertices 0...n-1 in compressed sparse row form. The
+ * out-neighbours of vertex v are targets[offsets[v]] ... targets[offsets[v+1]-1] in
+ * increasing order, with their weights at the same positions of an optional weights array.
+ * Looking up an edge is a binary search within the row and walking the neighbours of a
+ * vertex is a scan of consecutive ints, with no hashing or boxing.
+ *
+ * Weights are doubles rather than floats so that every algorithm gives exactly the same
+ * results on a copy as on the graph it was copied from.
+ *
+ * Build one with {@link #copyOf(GraphIfc)} or feed edges to a {@link Builder}. The mutating
+ * methods of GraphIfc throw UnsupportedOperationException.
+ */
+public class IntGraph extends RangeGraph {
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    IntGraph(int n, int[] offsets, int[] targets, double[] weights) {
+        super(n);
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Copies a graph whose vertices are 0...n-1. Weights are kept unless the graph is an
+     * unweighted Graph or BitMatrixGraph.
+     * @param g The graph to copy
+     * @return The copy, or g itself if it already is an IntGraph
+     * @throws IllegalArgumentException if the vertices are not 0...n-1
+     */
+    public static IntGraph copyOf(GraphIfc<Integer> g) {
+        if (g instanceof IntGraph) {
+            return (IntGraph) g;
+        }
+        int n = g.numVertices();
+        boolean weighted = !(g instanceof Graph || g instanceof BitMatrixGraph);
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            if (!g.containsVertex(v)) { throw new IllegalArgumentException("Vertices must be 0..." + (n - 1)); }
+            offsets[v + 1] = offsets[v] + g.degree(v);
+        }
+        int[] targets = new int[offsets[n]];
+        double[] weights = weighted ? new double[offsets[n]] : null;
+        for (int v = 0; v < n; v++) {
+            int e = offsets[v];
+            for (int u : g.getNeighbors(v)) {
+                targets[e++] = u;
+            }
+            Arrays.sort(targets, offsets[v], e);
+            if (weighted) {
+                for (int k = offsets[v]; k < e; k++) {
+                    weights[k] = g.getEdgeWeight(v, targets[k]);
+                }
+            }
+        }
+        return new IntGraph(n, offsets, targets, weights);
+    }
+
+    /**
+     * Creates a graph that adopts compressed sparse row arrays, e.g. ones read back from a
+     * file. The graph takes ownership of the arrays.
+     * @param n The number of vertices
+     * @param offsets The n+1 row offsets, from 0 to targets.length and never decreasing
+     * @param targets The out-neighbours of every row, strictly increasing within a row
+     * @param weights The weight of every edge, or null for an unweighted graph
+     * @return The graph
+     * @throws IllegalArgumentException if the arrays do not describe such a graph
+     */
+    public static IntGraph fromArrays(int n, int[] offsets, int[] targets, double[] weights) {
+        if (offsets.length != n + 1 || offsets[0] != 0 || offsets[n] != targets.length
+                || (weights != null && weights.length != targets.length)) {
+            throw new IllegalArgumentException("Offsets do not match " + n + " vertices and " + targets.length + " edges");
+        }
+        for (int v = 0; v < n; v++) {
+            if (offsets[v] > offsets[v + 1]) { throw new IllegalArgumentException("Offsets decrease at vertex " + v); }
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (targets[e] < 0 || targets[e] >= n || (e > offsets[v] && targets[e] <= targets[e - 1])) {
+                    throw new IllegalArgumentException("Row " + v + " is not a sorted list of vertices");
+                }
+            }
+        }
+        return new IntGraph(n, offsets, targets, weights);
+    }
+
+    /**
+     * Collects edges from a stream of (u, v) or (u, v, weight) triples and freezes them into
+     * an IntGraph. If the same edge is added more than once it keeps its smallest weight, as
+     * in {@link ConcurrentGraphBuilder}, so the graph does not depend on the order of the edges.
+     */
+    public static class Builder {
+        private final int n;
+        private int[] sources = new int[16];
+        private int[] ends = new int[16];
+        private double[] values;
+        private int size;
+
+        /**
+         * Creates a builder for a graph with the vertices 0...n-1
+         * @param n The number of vertices
+         */
+        public Builder(int n) {
+            if (n < 0) { throw new IllegalArgumentException(); }
+            this.n = n;
+        }
+
+        /**
+         * Adds an edge of weight 1
+         */
+        public Builder addEdge(int u, int v) {
+            return add(u, v, 1, false);
+        }
+
+        /**
+         * Adds a weighted edge. The graph is weighted if any edge was added with a weight.
+         */
+        public Builder addEdge(int u, int v, double weight) {
+            return add(u, v, weight, true);
+        }
+
+        /**
+         * Freezes the edges added so far into a graph
+         * @return The graph
+         */
+        public IntGraph build() {
+            // Counting sort by source keeps the order in which each row's edges were added
+            int[] offsets = new int[n + 1];
+            for (int e = 0; e < size; e++) {
+                offsets[sources[e] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, n);
+            long[] keyed = new long[size];
+            for (int e = 0; e < size; e++) {
+                // The target in the high bits and the edge in the low bits, so sorting a row
+                // puts repeats of an edge together
+                keyed[next[sources[e]]++] = ((long) ends[e] << 32) | e;
+            }
+            int[] targets = new int[size];
+            double[] weights = values == null ? null : new double[size];
+            int count = 0;
+            int[] compacted = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                Arrays.sort(keyed, offsets[v], offsets[v + 1]);
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    int target = (int) (keyed[k] >>> 32);
+                    double weight = weights == null ? 1 : values[(int) keyed[k]];
+                    if (count > compacted[v] && targets[count - 1] == target) {
+                        if (weights != null) {
+                            weights[count - 1] = Math.min(weights[count - 1], weight);
+                        }
+                        continue;
+                    }
+                    targets[count] = target;
+                    if (weights != null) {
+                        weights[count] = weight;
+                    }
+                    count++;
+                }
+                compacted[v + 1] = count;
+            }
+            return new IntGraph(n, compacted, Arrays.copyOf(targets, count), weights == null ? null : Arrays.copyOf(weights, count));
+        }
+
+        private Builder add(int u, int v, double weight, boolean weighted) {
+            if (u < 0 || u >= n || v < 0 || v >= n) { throw new IllegalArgumentException(); }
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                if (values != null) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+            }
+            if (weighted && values == null) {
+                values = new double[sources.length];
+                Arrays.fill(values, 0, size, 1);
+            }
+            sources[size] = u;
+            ends[size] = v;
+            if (values != null) {
+                values[size] = weighted ? weight : 1;
+            }
+            size++;
+            return this;
+        }
+    }
+
+    /**
+     * Returns the number of edges in the graph
+     * @return The number of edges in the graph
+     */
+    @Override
+    public int numEdges() {
+        return targets.length;
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("IntGraph is immutable");
+    }
+
+    @Override
+    public void addVertex(Integer v) {
+        throw new UnsupportedOperationException("IntGraph is immutable");
+    }
+
+    @Override
+    public void addEdge(Integer u, Integer v) {
+        throw new UnsupportedOperationException("IntGraph is immutable");
+    }
+
+    /**
+     * Returns the neighbors of v in increasing order as a read-only view of its row
+     *
+     * @param v An existing node in the graph
+     * @return All neighbors of v in the graph.
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public Collection<Integer> getNeighbors(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        final int from = offsets[v], to = offsets[v + 1];
+        return new AbstractCollection<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Range(from, to, targets);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && Arrays.binarySearch(targets, from, to, (Integer) o) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    /**
+     * Determines whether the edge from v to u exists
+     * @param v A node in the graph
+     * @param u A node in the graph
+     * @return True if the edge exists
+     * @throws IllegalArgumentException if either vertex does not occur in the graph
+     */
+    @Override
+    public boolean edgeExists(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        return edgeIndex(v, u) >= 0;
+    }
+
+    /**
+     * Returns the out-degree of the vertex
+     * @param v A vertex in the graph
+     * @return The degree of the vertex
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public int degree(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * Returns the weight of the edge from v to u, which is 1 in an unweighted graph
+     * @param v Starting node of the edge
+     * @param u Ending node of the edge
+     * @return weight W of the edge between v and u
+     * @throws IllegalArgumentException if the edge does not exist
+     */
+    @Override
+    public double getEdgeWeight(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        int e = edgeIndex(v, u);
+        if (e < 0) { throw new IllegalArgumentException("No edge from " + v + " to " + u); }
+        return weight(e);
+    }
+
+    /**
+     * Returns true if the graph carries edge weights
+     */
+    public boolean isWeighted() {
+        return weights != null;
+    }
+
+    /**
+     * Returns the position of the first edge of v; its edges are [firstEdge(v), firstEdge(v+1))
+     */
+    public int firstEdge(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * Returns the target of the edge at a position
+     */
+    public int target(int e) {
+        return targets[e];
+    }
+
+    /**
+     * Returns the weight of the edge at a position
+     */
+    public double weight(int e) {
+        return weights == null ? 1 : weights[e];
+    }
+
+    /**
+     * Returns the position of the edge from v to u, or a negative number if there is none
+     */
+    public int edgeIndex(int v, int u) {
+        int e = Arrays.binarySearch(targets, offsets[v], offsets[v + 1], u);
+        return e >= 0 ? e : -1;
+    }
+
+    @Override
+    public void forEachNeighbor(int v, IntConsumer action) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            action.accept(targets[e]);
+        }
+    }
+
+    @Override
+    public void forEachEdge(int v, EdgeVisitor visitor) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            visitor.visit(targets[e], weight(e));
+        }
+    }
+
+    /**
+     * Returns a cursor that walks the rows by position, so it never allocates
+     * @return A cursor that can be reset to any vertex
+     */
+    @Override
+    public NeighborCursor cursor() {
+        return new NeighborCursor() {
+            private int e, end;
+
+            @Override
+            public void reset(int v) {
+                if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+                e = offsets[v] - 1;
+                end = offsets[v + 1];
+            }
+
+            @Override
+            public boolean next() {
+                return ++e < end;
+            }
+
+            @Override
+            public int vertex() {
+                return targets[e];
+            }
+
+            @Override
+            public double weight() {
+                return IntGraph.this.weight(e);
+            }
+        };
+    }
+
+    /**
+     * Iterates over a range of positions of an array
+     */
+    private static class Range implements Iterator<Integer> {
+        private final int[] values;
+        private final int to;
+        private int next;
+
+        Range(int from, int to, int[] values) {
+            this.next = from;
+            this.to = to;
+            this.values = values;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < to;
+        }
+
+        @Override
+        public Integer next() {
+            if (next >= to) { throw new NoSuchElementException(); }
+            int i = next++;
+            return values[i];
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A read-only directed graph on the vertices 0...n-1 whose compressed sparse rows live in a
+ * memory-mapped file instead of on the heap. The heap only holds the graph object and the
+ * buffer handles, so a graph with billions of edges, such as the complete Option 4 graph of
+ * the full MovieLens catalog, can be analysed without garbage-collection pressure; the
+ * operating system pages the rows in and out as they are used.
+ *
+ * A single mapping is limited to 2 GB, so each section of the file is mapped as a series of
+ * 1 GB chunks and element positions are longs.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int magic, int version, int weighted (0 or 1), int V, long E
+ *   V+1 long row offsets, E int targets, padding to 8 bytes, and if weighted E double weights
+ * </pre>
+ * The targets of each row are in strictly increasing order.
+ */
+public class MappedGraph extends RangeGraph {
+    public static final int MAGIC = 0x4D4C4D47; // "MLMG"
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private final long numEdges;
+    private final Region offsets;
+    private final Region targets;
+    private final Region weights;
+
+    private MappedGraph(int n, long numEdges, Region offsets, Region targets, Region weights) {
+        super(n);
+        this.numEdges = numEdges;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Maps a graph file
+     * @param filename The file written by {@link #write} or a {@link Writer}
+     * @return The graph
+     * @throws IOException if the file cannot be read or is not a graph file
+     */
+    public static MappedGraph open(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() < HEADER_BYTES) { throw new IOException("Not a graph file: " + filename); }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) { throw new IOException("Not a graph file: " + filename); }
+            boolean weighted = header.getInt() != 0;
+            int n = header.getInt();
+            long numEdges = header.getLong();
+            long offsetsAt = HEADER_BYTES;
+            long targetsAt = offsetsAt + 8L * (n + 1);
+            long weightsAt = align8(targetsAt + 4L * numEdges);
+            long end = weighted ? weightsAt + 8L * numEdges : targetsAt + 4L * numEdges;
+            if (n < 0 || numEdges < 0 || channel.size() < end) { throw new IOException("Truncated graph file: " + filename); }
+            // The mappings stay valid after the channel is closed
+            return new MappedGraph(n, numEdges,
+                    new Region(channel, offsetsAt, 8L * (n + 1)),
+                    new Region(channel, targetsAt, 4L * numEdges),
+                    weighted ? new Region(channel, weightsAt, 8L * numEdges) : null);
+        }
+    }
+
+    /**
+     * Writes a graph whose vertices are 0...n-1 to a file that {@link #open} can map
+     * @param filename The file
+     * @param g The graph
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String filename, GraphIfc<Integer> g) throws IOException {
+        int n = g.numVertices();
+        boolean weighted = !(g instanceof Graph || g instanceof BitMatrixGraph || (g instanceof IntGraph && !((IntGraph) g).isWeighted()));
+        try (Writer writer = new Writer(filename, n, weighted)) {
+            int[] row = new int[16];
+            double[] rowWeights = new double[16];
+            long[] order = new long[16];
+            for (int v = 0; v < n; v++) {
+                if (!g.containsVertex(v)) { throw new IllegalArgumentException("Vertices must be 0..." + (n - 1)); }
+                int d = g.degree(v);
+                if (row.length < d) {
+                    row = new int[d];
+                    rowWeights = new double[d];
+                    order = new long[d];
+                }
+                int[] targets = row;
+                double[] values = rowWeights;
+                int[] size = {0};
+                g.forEachEdge(v, (u, weight) -> {
+                    targets[size[0]] = u;
+                    values[size[0]++] = weight;
+                });
+                // Sort the row by target, carrying the weights along
+                for (int k = 0; k < size[0]; k++) {
+                    order[k] = ((long) targets[k] << 32) | k;
+                }
+                Arrays.sort(order, 0, size[0]);
+                for (int k = 0; k < size[0]; k++) {
+                    writer.addEdge(v, (int) (order[k] >>> 32), values[(int) order[k]]);
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Streams edges into a graph file without holding them on the heap. Edges must arrive
+     * grouped by source in increasing order, and in increasing order of target within a
+     * source. The targets and weights are spooled to temporary files and joined by
+     * {@link #finish}, which is the only step that writes the graph file. Closing a writer
+     * that was not finished, e.g. because building the graph failed, deletes the spools and
+     * leaves no file behind that {@link #open} would accept.
+     */
+    public static class Writer implements AutoCloseable {
+        private final File file;
+        private final File targetSpool;
+        private final File weightSpool;
+        private final DataOutputStream targetOut;
+        private final DataOutputStream weightOut;
+        private final int n;
+        private final long[] rowEnds;
+        private int lastSource = 0;
+        private int lastTarget = -1;
+        private long numEdges = 0;
+        private boolean finished = false;
+
+        /**
+         * Starts a graph file
+         * @param filename The file
+         * @param n The number of vertices
+         * @param weighted If false, weights passed to addEdge are ignored and every edge has weight 1
+         * @throws IOException if the spool files cannot be created
+         */
+        public Writer(String filename, int n, boolean weighted) throws IOException {
+            this.file = new File(filename);
+            this.n = n;
+            rowEnds = new long[n];
+            targetSpool = new File(filename + ".targets.tmp");
+            weightSpool = weighted ? new File(filename + ".weights.tmp") : null;
+            targetOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(targetSpool), 1 << 16));
+            weightOut = weighted ? new DataOutputStream(new BufferedOutputStream(new FileOutputStream(weightSpool), 1 << 16)) : null;
+        }
+
+        /**
+         * Appends an edge of weight 1
+         */
+        public void addEdge(int u, int v) throws IOException {
+            addEdge(u, v, 1);
+        }
+
+        /**
+         * Appends a weighted edge
+         * @throws IllegalArgumentException if the edge is out of order or a vertex is out of range
+         */
+        public void addEdge(int u, int v, double weight) throws IOException {
+            if (finished) { throw new IllegalStateException("The graph file is already written"); }
+            if (u < 0 || u >= n || v < 0 || v >= n) { throw new IllegalArgumentException(); }
+            if (u < lastSource || (u == lastSource && v <= lastTarget)) {
+                throw new IllegalArgumentException("Edges must be added in increasing order: " + u + " -> " + v);
+            }
+            if (u != lastSource) {
+                lastTarget = -1;
+            }
+            lastSource = u;
+            lastTarget = v;
+            targetOut.writeInt(v);
+            if (weightOut != null) {
+                weightOut.writeDouble(weight);
+            }
+            numEdges++;
+            rowEnds[u] = numEdges;
+        }
+
+        /**
+         * Writes the header and offsets, appends the spooled sections and only then replaces
+         * the graph file, so a reader never sees a partial graph
+         * @throws IOException if the file cannot be written
+         */
+        public void finish() throws IOException {
+            if (finished) { throw new IllegalStateException("The graph file is already written"); }
+            finished = true;
+            closeSpools();
+            File tmp = new File(file.getPath() + ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(weightOut != null ? 1 : 0);
+                    out.writeInt(n);
+                    out.writeLong(numEdges);
+                    long offset = 0;
+                    out.writeLong(offset);
+                    for (int v = 0; v < n; v++) {
+                        // Rows without edges end where the previous row ended
+                        offset = Math.max(offset, rowEnds[v]);
+                        out.writeLong(offset);
+                    }
+                    out.flush();
+                    append(out, targetSpool);
+                    if (weightOut != null) {
+                        long targetsEnd = HEADER_BYTES + 8L * (n + 1) + 4L * numEdges;
+                        for (long pad = targetsEnd; pad < align8(targetsEnd); pad++) {
+                            out.writeByte(0);
+                        }
+                        out.flush();
+                        append(out, weightSpool);
+                    }
+                }
+                if (!tmp.renameTo(file)) {
+                    file.delete();
+                    if (!tmp.renameTo(file)) {
+                        throw new IOException("Could not write graph " + file);
+                    }
+                }
+            }
+            finally {
+                tmp.delete();
+                deleteSpools();
+            }
+        }
+
+        /**
+         * Deletes the spools. Unless {@link #finish} succeeded, no graph file is written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                closeSpools();
+            }
+            finally {
+                deleteSpools();
+            }
+        }
+
+        private void closeSpools() throws IOException {
+            try {
+                targetOut.close();
+            }
+            finally {
+                if (weightOut != null) {
+                    weightOut.close();
+                }
+            }
+        }
+
+        private void deleteSpools() {
+            targetSpool.delete();
+            if (weightSpool != null) {
+                weightSpool.delete();
+            }
+        }
+
+        private static void append(DataOutputStream out, File spool) throws IOException {
+            try (RandomAccessFile in = new RandomAccessFile(spool, "r")) {
+                byte[] buffer = new byte[1 << 16];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of edges in the graph, capped at Integer.MAX_VALUE
+     * @return The number of edges in the graph
+     */
+    @Override
+    public int numEdges() {
+        return (int) Math.min(numEdges, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the exact number of edges in the graph
+     */
+    public long numEdgesLong() {
+        return numEdges;
+    }
+
+    /**
+     * Returns true if the graph carries edge weights
+     */
+    public boolean isWeighted() {
+        return weights != null;
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    @Override
+    public void addVertex(Integer v) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    @Override
+    public void addEdge(Integer u, Integer v) {
+        throw new UnsupportedOperationException("MappedGraph is read-only");
+    }
+
+    /**
+     * Returns the neighbors of v in increasing order as a view of its mapped row
+     *
+     * @param v An existing node in the graph
+     * @return All neighbors of v in the graph.
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public Collection<Integer> getNeighbors(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        final int u = v;
+        return new AbstractCollection<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                final long end = rowEnd(u);
+                return new Iterator<Integer>() {
+                    private long e = rowStart(u);
+
+                    @Override
+                    public boolean hasNext() {
+                        return e < end;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (e >= end) { throw new NoSuchElementException(); }
+                        return target(e++);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && containsVertex((Integer) o) && edgeIndex(u, (Integer) o) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return degree(u);
+            }
+        };
+    }
+
+    /**
+     * Determines whether the edge from v to u exists by binary search of v's row
+     * @param v A node in the graph
+     * @param u A node in the graph
+     * @return True if the edge exists
+     * @throws IllegalArgumentException if either vertex does not occur in the graph
+     */
+    @Override
+    public boolean edgeExists(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        return edgeIndex(v, u) >= 0;
+    }
+
+    /**
+     * Returns the out-degree of the vertex
+     * @param v A vertex in the graph
+     * @return The degree of the vertex
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public int degree(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        return (int) (rowEnd(v) - rowStart(v));
+    }
+
+    /**
+     * Returns the weight of the edge from v to u, which is 1 in an unweighted graph
+     * @param v Starting node of the edge
+     * @param u Ending node of the edge
+     * @return weight W of the edge between v and u
+     * @throws IllegalArgumentException if the edge does not exist
+     */
+    @Override
+    public double getEdgeWeight(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        long e = edgeIndex(v, u);
+        if (e < 0) { throw new IllegalArgumentException("No edge from " + v + " to " + u); }
+        return weight(e);
+    }
+
+    @Override
+    public void forEachNeighbor(int v, IntConsumer action) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        for (long e = rowStart(v), end = rowEnd(v); e < end; e++) {
+            action.accept(target(e));
+        }
+    }
+
+    @Override
+    public void forEachEdge(int v, EdgeVisitor visitor) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        for (long e = rowStart(v), end = rowEnd(v); e < end; e++) {
+            visitor.visit(target(e), weight(e));
+        }
+    }
+
+    /**
+     * Returns a cursor that reads a mapped row by position, so it never allocates
+     * @return A cursor that can be reset to any vertex
+     */
+    @Override
+    public NeighborCursor cursor() {
+        return new NeighborCursor() {
+            private long e, end;
+
+            @Override
+            public void reset(int v) {
+                if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+                e = rowStart(v) - 1;
+                end = rowEnd(v);
+            }
+
+            @Override
+            public boolean next() {
+                return ++e < end;
+            }
+
+            @Override
+            public int vertex() {
+                return target(e);
+            }
+
+            @Override
+            public double weight() {
+                return MappedGraph.this.weight(e);
+            }
+        };
+    }
+
+    private long rowStart(int v) {
+        return offsets.getLong(8L * v);
+    }
+
+    private long rowEnd(int v) {
+        return offsets.getLong(8L * (v + 1));
+    }
+
+    private int target(long e) {
+        return targets.getInt(4L * e);
+    }
+
+    private double weight(long e) {
+        return weights == null ? 1 : weights.getDouble(8L * e);
+    }
+
+    /**
+     * Returns the position of the edge from v to u, or -1 if there is none
+     */
+    private long edgeIndex(int v, int u) {
+        long lo = rowStart(v), hi = rowEnd(v) - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int t = target(mid);
+            if (t < u) {
+                lo = mid + 1;
+            } else if (t > u) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static long align8(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * A section of the file mapped as 1 GB chunks. Elements are 4 or 8 bytes and the section
+     * is read from its own start, so no element straddles two chunks.
+     */
+    private static final class Region {
+        private static final int CHUNK_SHIFT = 30;
+        private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+        private final MappedByteBuffer[] chunks;
+
+        Region(FileChannel channel, long position, long bytes) throws IOException {
+            chunks = new MappedByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int c = 0; c < chunks.length; c++) {
+                long start = (long) c << CHUNK_SHIFT;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, Math.min(1L << CHUNK_SHIFT, bytes - start));
+            }
+        }
+
+        int getInt(long offset) {
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+        }
+
+        long getLong(long offset) {
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+        }
+
+        double getDouble(long offset) {
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getDouble((int) (offset & CHUNK_MASK));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package graph;
+
+/**
+ * A reusable cursor over the out-edges of a vertex. One cursor can walk the neighbours of
+ * any number of vertices in turn, so a traversal allocates a single cursor up front:
+ * <pre>
+ *   NeighborCursor c = g.cursor();
+ *   c.reset(v);
+ *   while (c.next()) { ... c.vertex() ... c.weight() ... }
+ * </pre>
+ */
+public interface NeighborCursor {
+    /**
+     * Positions the cursor before the first out-edge of a vertex
+     * @param v A vertex in the graph
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    void reset(int v);
+
+    /**
+     * Moves to the next out-edge
+     * @return False if there are no more edges
+     */
+    boolean next();
+
+    /**
+     * Returns the end point of the current edge
+     */
+    int vertex();
+
+    /**
+     * Returns the weight of the current edge
+     */
+    double weight();
+}
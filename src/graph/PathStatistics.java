@@ -0,0 +1,276 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The diameter and average path length of a graph on the vertices 0...n-1, computed
+ * together in one pass over the shortest path lengths.
+ *
+ * An unweighted graph is searched breadth-first from every source in parallel, which costs
+ * O(n * m) instead of Floyd-Warshall's O(n^3). Sparse graphs run 64 or more searches at a
+ * time with {@link MultiSourceBfs}. Dense bit matrices are searched one source at a time
+ * with bitset frontiers, and otherwise each worker reuses one distance array, one queue and
+ * one neighbour cursor for all of its sources. A weighted graph falls back to a single
+ * {@link GraphAlgorithms#floydWarshall} run, unless it is a {@link MappedGraph} or its n x n
+ * matrix would not fit in a quarter of the heap, in which case every source is searched
+ * with Dijkstra's algorithm in O(n) memory per worker.
+ *
+ * The results match reading the Floyd-Warshall matrix: the average counts every reachable
+ * ordered pair including each vertex with itself, and the diameter is the first longest
+ * path in row-major order.
+ */
+public class PathStatistics {
+    private long totalLength = 0;
+    private long numPaths = 0;
+    private int diameter = 0;
+    private int start = -1;
+    private int end = -1;
+
+    PathStatistics() {
+    }
+
+    /**
+     * Computes the statistics of a graph
+     * @param g The graph, whose vertices must be 0...n-1
+     * @return The statistics
+     */
+    public static PathStatistics of(GraphIfc<Integer> g) {
+        int n = g.numVertices();
+        if (!isUnweighted(g)) {
+            if (g instanceof MappedGraph || 4L * n * n > Runtime.getRuntime().maxMemory() / 4) {
+                return byDijkstra(g);
+            }
+            PathStatistics stats = new PathStatistics();
+            int[][] paths = GraphAlgorithms.floydWarshall(g);
+            for (int i = 0; i < n; i++) {
+                stats.addRow(i, paths[i]);
+            }
+            return stats;
+        }
+        // Bitset searches win once rows are dense enough that ORing them beats visiting edges
+        if (g instanceof BitMatrixGraph && (long) g.numEdges() * 16 > (long) n * n) {
+            return bySource(g);
+        }
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        return new MultiSourceBfs(Math.max(1, Math.min(16, n / (64 * parallelism)))).statistics(g);
+    }
+
+    /**
+     * Computes the statistics of an unweighted graph with one breadth-first search per
+     * source, or a bitset search for a {@link BitMatrixGraph}
+     * @param g The graph, whose vertices must be 0...n-1; edge weights are ignored
+     * @return The statistics
+     */
+    public static PathStatistics bySource(GraphIfc<Integer> g) {
+        int n = g.numVertices();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int grain = Math.max(1, n / (pool.getParallelism() * 8));
+        return pool.invoke(new SourceTask(g, false, 0, n, grain));
+    }
+
+    /**
+     * Computes the statistics of a weighted graph with one Dijkstra search per source, which
+     * streams the edges of each vertex instead of holding all n^2 path lengths. Weights are
+     * truncated to ints as in {@link GraphAlgorithms#floydWarshall}, so the results are the same.
+     * @param g The graph, whose vertices must be 0...n-1
+     * @return The statistics
+     * @throws IllegalArgumentException if an edge has a negative weight
+     */
+    public static PathStatistics byDijkstra(GraphIfc<Integer> g) {
+        int n = g.numVertices();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int grain = Math.max(1, n / (pool.getParallelism() * 8));
+        return pool.invoke(new SourceTask(g, true, 0, n, grain));
+    }
+
+    /**
+     * Returns true if every edge of the graph has weight 1, so that breadth-first search
+     * finds its shortest paths
+     * @param g The graph
+     * @return True for the unweighted representations
+     */
+    public static boolean isUnweighted(GraphIfc<Integer> g) {
+        return g instanceof Graph || g instanceof BitMatrixGraph
+                || (g instanceof IntGraph && !((IntGraph) g).isWeighted())
+                || (g instanceof MappedGraph && !((MappedGraph) g).isWeighted());
+    }
+
+    /**
+     * Returns the length of the longest shortest path, 0 if no two vertices are connected
+     */
+    public int diameter() {
+        return diameter;
+    }
+
+    /**
+     * Returns the first vertex of the longest shortest path, or -1
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Returns the last vertex of the longest shortest path, or -1
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Returns the sum of the lengths of all shortest paths
+     */
+    public long totalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Returns the number of ordered pairs (i, j) such that j can be reached from i,
+     * including every vertex with itself
+     */
+    public long numPaths() {
+        return numPaths;
+    }
+
+    /**
+     * Returns the average length of a shortest path
+     */
+    public double averagePathLength() {
+        return (double) totalLength / (double) numPaths;
+    }
+
+    /**
+     * Adds the shortest path lengths from source i, Integer.MAX_VALUE or -1 marking
+     * unreachable vertices
+     */
+    private void addRow(int i, int[] lengths) {
+        for (int j = 0; j < lengths.length; j++) {
+            int length = lengths[j];
+            if (length < 0 || length == Integer.MAX_VALUE) {
+                continue;
+            }
+            totalLength += length;
+            numPaths++;
+            if (length > diameter) {
+                diameter = length;
+                start = i;
+                end = j;
+            }
+        }
+    }
+
+    /**
+     * Adds paths of the given total length
+     */
+    void addPaths(long length, long count) {
+        totalLength += length;
+        numPaths += count;
+    }
+
+    /**
+     * Offers the longest path from one source, in row-major order of the sources
+     */
+    void offerLongest(int length, int from, int to) {
+        if (length > diameter) {
+            diameter = length;
+            start = from;
+            end = to;
+        }
+    }
+
+    /**
+     * Adds the statistics of a later range of sources, so that ties keep the earlier path
+     */
+    PathStatistics merge(PathStatistics later) {
+        totalLength += later.totalLength;
+        numPaths += later.numPaths;
+        if (later.diameter > diameter) {
+            diameter = later.diameter;
+            start = later.start;
+            end = later.end;
+        }
+        return this;
+    }
+
+    /**
+     * Searches breadth-first, or with Dijkstra's algorithm if weighted, from a range of sources
+     */
+    private static class SourceTask extends RecursiveTask<PathStatistics> {
+        private static final long serialVersionUID = 1L;
+        private final GraphIfc<Integer> g;
+        private final boolean weighted;
+        private final int from, to, grain;
+
+        SourceTask(GraphIfc<Integer> g, boolean weighted, int from, int to, int grain) {
+            this.g = g;
+            this.weighted = weighted;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected PathStatistics compute() {
+            if (to - from > grain) {
+                int mid = (from + to) >>> 1;
+                SourceTask later = new SourceTask(g, weighted, mid, to, grain);
+                later.fork();
+                PathStatistics stats = new SourceTask(g, weighted, from, mid, grain).compute();
+                return stats.merge(later.join());
+            }
+            int n = g.numVertices();
+            PathStatistics stats = new PathStatistics();
+            if (weighted) {
+                dijkstra(stats);
+                return stats;
+            }
+            int[] dist = new int[n];
+            if (g instanceof BitMatrixGraph) {
+                // A whole level of a bit matrix is expanded 64 vertices per word operation
+                int words = (n + 63) >>> 6;
+                long[] visited = new long[words], frontier = new long[words], next = new long[words];
+                for (int source = from; source < to; source++) {
+                    ((BitMatrixGraph) g).bfs(source, dist, visited, frontier, next);
+                    stats.addRow(source, dist);
+                }
+                return stats;
+            }
+            int[] queue = new int[n];
+            Arrays.fill(dist, -1);
+            NeighborCursor neighbors = g.cursor();
+            for (int source = from; source < to; source++) {
+                int head = 0, tail = 0;
+                dist[source] = 0;
+                queue[tail++] = source;
+                while (head < tail) {
+                    int u = queue[head++];
+                    neighbors.reset(u);
+                    while (neighbors.next()) {
+                        int v = neighbors.vertex();
+                        if (dist[v] < 0) {
+                            dist[v] = dist[u] + 1;
+                            queue[tail++] = v;
+                        }
+                    }
+                }
+                stats.addRow(source, dist);
+                // Only the visited vertices need resetting
+                for (int k = 0; k < tail; k++) {
+                    dist[queue[k]] = -1;
+                }
+            }
+            return stats;
+        }
+
+        /**
+         * Adds the rows of the range's sources, reusing one search for all of them
+         */
+        private void dijkstra(PathStatistics stats) {
+            DijkstraSearch search = new DijkstraSearch(g);
+            for (int source = from; source < to; source++) {
+                stats.addRow(source, search.search(source));
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package graph;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A graph whose vertices are always 0...n-1. It implements the vertex methods of GraphIfc
+ * once for the array-backed graphs, which only store and look up edges.
+ */
+public abstract class RangeGraph implements GraphIfc<Integer> {
+    /** The number of vertices */
+    protected final int n;
+
+    /**
+     * Creates a graph with the vertices 0...n-1
+     * @param n The number of vertices
+     */
+    protected RangeGraph(int n) {
+        this.n = n;
+    }
+
+    /**
+     * Returns the number of vertices in the graph
+     * @return The number of vertices in the graph
+     */
+    @Override
+    public int numVertices() {
+        return n;
+    }
+
+    /**
+     * The vertices 0...n-1 always exist, so this only checks that v is one of them
+     * @param v The vertex to be added
+     * @throws IllegalArgumentException if v is not in 0...n-1
+     */
+    @Override
+    public void addVertex(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+    }
+
+    /**
+     * Returns the set of all vertices in the graph.
+     * @return A set containing the vertices 0...n-1
+     */
+    @Override
+    public Set<Integer> getVertices() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < n;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (next >= n) { throw new NoSuchElementException(); }
+                        return next++;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && containsVertex((Integer) o);
+            }
+
+            @Override
+            public int size() {
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Determines whether the given vertex is in the graph
+     *
+     * @param v The vertex to be tested.
+     * @return True if v is in 0...n-1
+     */
+    @Override
+    public boolean containsVertex(Integer v) {
+        return v != null && v >= 0 && v < n;
+    }
+
+    /**
+     * Returns a string representation of the graph. The string representation shows all
+     * vertices and edges in the graph.
+     * @return A string representation of the graph
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (int v = 0; v < n; v++) {
+            s.append(v);
+            s.append(" ==> [");
+            int start = s.length();
+            forEachNeighbor(v, u -> s.append(u).append(", "));
+            if (s.length() > start) {
+                s.delete(s.length() - 2, s.length());
+            }
+            s.append("]");
+            s.append("\n");
+        }
+        return s.toString();
+    }
+}
@@ -0,0 +1,344 @@
+package graph;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * An undirected weighted graph on the vertices 0...n-1 that stores one weight per unordered
+ * pair in a flat array holding the upper triangle of the adjacency matrix. The weight of the
+ * pair (i, j) with i &lt; j lives at index rowBase(i) + j and absent edges are NaN, so the
+ * graph costs 4n(n-1) bytes no matter how many edges it has.
+ *
+ * Every edge exists in both directions and is counted twice by numEdges, like a
+ * WeightedGraph with an edge added each way. A weight function can turn the stored
+ * symmetric value into a weight that depends on the direction, which lets a graph whose
+ * weights are symmetric except for a cheap per-direction term store the expensive part once.
+ */
+public class SymmetricWeightedGraph extends RangeGraph {
+
+    /**
+     * Turns the value stored for the unordered pair {u, v} into the weight of the edge (u, v)
+     */
+    @FunctionalInterface
+    public interface WeightFunction {
+        double weight(int u, int v, double stored);
+    }
+
+    private final double[] weights;
+    private final int[] degrees;
+    private final WeightFunction function;
+    private int numEdges = 0;
+
+    /**
+     * Creates a graph with the vertices 0...n-1 and no edges
+     * @param n The number of vertices
+     */
+    public SymmetricWeightedGraph(int n) {
+        this(n, null);
+    }
+
+    /**
+     * Creates a graph with the vertices 0...n-1 and no edges whose edge weights are computed
+     * from the stored values
+     * @param n The number of vertices
+     * @param function Computes the weight of each direction from the stored value, or null to
+     *                 return the stored value as is
+     * @throws IllegalArgumentException if the upper triangle does not fit in an array
+     */
+    public SymmetricWeightedGraph(int n, WeightFunction function) {
+        super(n);
+        long pairs = (long) n * (n - 1) / 2;
+        if (n < 0 || pairs > Integer.MAX_VALUE) { throw new IllegalArgumentException("Too many vertices: " + n); }
+        this.function = function;
+        weights = new double[(int) pairs];
+        Arrays.fill(weights, Double.NaN);
+        degrees = new int[n];
+    }
+
+    private SymmetricWeightedGraph(int n, WeightFunction function, double[] weights) {
+        super(n);
+        this.function = function;
+        this.weights = weights;
+        degrees = new int[n];
+    }
+
+    /**
+     * Creates a graph that adopts a filled upper triangle, e.g. one computed in parallel
+     * @param n The number of vertices
+     * @param upper The value of every pair (i, j) with i &lt; j in row-major order, NaN
+     *              where there is no edge. The graph takes ownership of the array.
+     * @param function Computes the weight of each direction from the stored value, or null
+     * @return The graph
+     * @throws IllegalArgumentException if the array does not have n(n-1)/2 entries
+     */
+    public static SymmetricWeightedGraph fromTriangle(int n, double[] upper, WeightFunction function) {
+        if ((long) n * (n - 1) / 2 != upper.length) { throw new IllegalArgumentException("Expected " + (long) n * (n - 1) / 2 + " pairs"); }
+        SymmetricWeightedGraph g = new SymmetricWeightedGraph(n, function, upper);
+        int index = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++, index++) {
+                if (!Double.isNaN(upper[index])) {
+                    g.degrees[i]++;
+                    g.degrees[j]++;
+                    g.numEdges += 2;
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Returns the number of edges in the graph, counting both directions of every pair
+     * @return The number of edges in the graph
+     */
+    @Override
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * Removes all edges from the graph. The vertices 0...n-1 remain.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(weights, Double.NaN);
+        Arrays.fill(degrees, 0);
+        numEdges = 0;
+    }
+
+    /**
+     * Adds an edge of weight 1 between u and v in both directions
+     * @param u A vertex in the graph
+     * @param v A vertex in the graph
+     * @throws IllegalArgumentException if either vertex does not occur in the graph or u == v
+     */
+    @Override
+    public void addEdge(Integer u, Integer v) {
+        addEdge(u, v, 1);
+    }
+
+    /**
+     * Adds an edge between u and v in both directions, replacing any existing value
+     * @param u A vertex in the graph
+     * @param v A vertex in the graph
+     * @param weight The value stored for the pair
+     * @throws IllegalArgumentException if either vertex does not occur in the graph or u == v
+     */
+    public void addEdge(int u, int v, double weight) {
+        if (!containsVertex(u) || !containsVertex(v) || u == v || Double.isNaN(weight)) { throw new IllegalArgumentException(); }
+        int index = index(u, v);
+        if (Double.isNaN(weights[index])) {
+            degrees[u]++;
+            degrees[v]++;
+            numEdges += 2;
+        }
+        weights[index] = weight;
+    }
+
+    /**
+     * Returns the value stored for the unordered pair {u, v}
+     * @param u A vertex in the graph
+     * @param v A vertex in the graph
+     * @return The stored value, or NaN if there is no edge
+     */
+    public double storedWeight(int u, int v) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        return u == v ? Double.NaN : weights[index(u, v)];
+    }
+
+    /**
+     * Returns the neighbors of v in increasing order as a view of the triangle
+     *
+     * @param v An existing node in the graph
+     * @return All neighbors of v in the graph.
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public Collection<Integer> getNeighbors(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        final int u = v;
+        return new AbstractCollection<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int next = advance(0);
+
+                    private int advance(int w) {
+                        while (w < n && (w == u || Double.isNaN(weights[index(u, w)]))) {
+                            w++;
+                        }
+                        return w;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < n;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (next >= n) { throw new NoSuchElementException(); }
+                        int w = next;
+                        next = advance(w + 1);
+                        return w;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && containsVertex((Integer) o) && edgeExists(u, (Integer) o);
+            }
+
+            @Override
+            public int size() {
+                return degrees[u];
+            }
+        };
+    }
+
+    /**
+     * Determines whether an edge exists between two vertices
+     * @param v A node in the graph
+     * @param u A node in the graph
+     * @return True if an edge exists between the two vertices
+     * @throws IllegalArgumentException if either vertex does not occur in the graph
+     */
+    @Override
+    public boolean edgeExists(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        return !u.equals(v) && !Double.isNaN(weights[index(v, u)]);
+    }
+
+    /**
+     * Returns the degree of the vertex
+     * @param v A vertex in the graph
+     * @return The degree of the vertex
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public int degree(Integer v) {
+        if (!containsVertex(v)) { throw new IllegalArgumentException(); }
+        return degrees[v];
+    }
+
+    /**
+     * Returns the weight of the edge from v to u
+     * @param v Starting node of the edge
+     * @param u Ending node of the edge
+     * @return weight W of the edge between v and u
+     * @throws IllegalArgumentException if either vertex does not occur in the graph or there
+     * is no edge from v to u
+     */
+    @Override
+    public double getEdgeWeight(Integer v, Integer u) {
+        if (!containsVertex(u) || !containsVertex(v)) { throw new IllegalArgumentException(); }
+        // The triangle has no diagonal, so a self-loop would read another pair's slot
+        double stored = v.equals(u) ? Double.NaN : weights[index(v, u)];
+        if (Double.isNaN(stored)) { throw new IllegalArgumentException("No edge from " + v + " to " + u); }
+        return function == null ? stored : function.weight(v, u, stored);
+    }
+
+    /**
+     * Calls the action with every neighbor of v in increasing order. Pairs with a smaller
+     * vertex are read down a column of the triangle and pairs with a larger one along a row.
+     * @param v An existing node in the graph
+     * @param action Receives each neighbor
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public void forEachNeighbor(int v, IntConsumer action) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        for (int w = 0; w < v; w++) {
+            if (!Double.isNaN(weights[rowBase(w) + v])) {
+                action.accept(w);
+            }
+        }
+        int base = rowBase(v);
+        for (int w = v + 1; w < n; w++) {
+            if (!Double.isNaN(weights[base + w])) {
+                action.accept(w);
+            }
+        }
+    }
+
+    /**
+     * Calls the visitor with every out-edge of v and its weight in increasing order of
+     * neighbor
+     * @param v An existing node in the graph
+     * @param visitor Receives each neighbor and the weight of the edge to it
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public void forEachEdge(int v, EdgeVisitor visitor) {
+        if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+        for (int w = 0; w < v; w++) {
+            double stored = weights[rowBase(w) + v];
+            if (!Double.isNaN(stored)) {
+                visitor.visit(w, function == null ? stored : function.weight(v, w, stored));
+            }
+        }
+        int base = rowBase(v);
+        for (int w = v + 1; w < n; w++) {
+            double stored = weights[base + w];
+            if (!Double.isNaN(stored)) {
+                visitor.visit(w, function == null ? stored : function.weight(v, w, stored));
+            }
+        }
+    }
+
+    /**
+     * Returns a cursor that scans the triangle in place, so it never allocates
+     * @return A cursor that can be reset to any vertex
+     */
+    @Override
+    public NeighborCursor cursor() {
+        return new NeighborCursor() {
+            private int source, current;
+
+            @Override
+            public void reset(int v) {
+                if (v < 0 || v >= n) { throw new IllegalArgumentException(); }
+                source = v;
+                current = -1;
+            }
+
+            @Override
+            public boolean next() {
+                do {
+                    current++;
+                } while (current < n && (current == source || Double.isNaN(weights[index(source, current)])));
+                return current < n;
+            }
+
+            @Override
+            public int vertex() {
+                return current;
+            }
+
+            @Override
+            public double weight() {
+                double stored = weights[index(source, current)];
+                return function == null ? stored : function.weight(source, current, stored);
+            }
+        };
+    }
+
+    /**
+     * Returns the index of the unordered pair {u, v}, u != v, in the triangle
+     */
+    private int index(int u, int v) {
+        return u < v ? rowBase(u) + v : rowBase(v) + u;
+    }
+
+    /**
+     * Returns the index of pair (i, j) minus j, for any j &gt; i
+     */
+    private int rowBase(int i) {
+        return (int) ((long) i * (2L * n - i - 1) / 2) - i - 1;
+    }
+}
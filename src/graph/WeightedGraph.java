@@ -1,6 +1,7 @@
 package graph;
 
 import java.util.*;
+import java.util.function.IntConsumer;
 
 public class WeightedGraph<V> implements GraphIfc<V>{
 
@@ -121,6 +122,78 @@ public class WeightedGraph<V> implements GraphIfc<V>{
         return graph.get(v).size();
     }
 
+    /**
+     * Calls the action with every neighbor of v, reading the adjacency map directly
+     * @param v An existing node in the graph
+     * @param action Receives each neighbor
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public void forEachNeighbor(int v, IntConsumer action) {
+        Map<V,Double> neighbors = graph.get(v);
+        if(neighbors == null){ throw new IllegalArgumentException();}
+        for(V u : neighbors.keySet()){
+            action.accept((Integer) u);
+        }
+    }
+
+    /**
+     * Calls the visitor with every out-edge of v, taking each weight from the same map
+     * entry as the neighbor instead of looking it up again
+     * @param v An existing node in the graph
+     * @param visitor Receives each neighbor and the weight of the edge to it
+     * @throws IllegalArgumentException if the vertex does not occur in the graph
+     */
+    @Override
+    public void forEachEdge(int v, EdgeVisitor visitor) {
+        Map<V,Double> neighbors = graph.get(v);
+        if(neighbors == null){ throw new IllegalArgumentException();}
+        for(Map.Entry<V,Double> edge : neighbors.entrySet()){
+            visitor.visit((Integer) edge.getKey(), edge.getValue());
+        }
+    }
+
+    /**
+     * Returns a cursor that walks the adjacency map entries directly
+     * @return A cursor that can be reset to any vertex
+     */
+    @Override
+    public NeighborCursor cursor() {
+        return new NeighborCursor() {
+            private Iterator<Map.Entry<V,Double>> edges;
+            private int current;
+            private double weight;
+
+            @Override
+            public void reset(int v) {
+                Map<V,Double> neighbors = graph.get(v);
+                if(neighbors == null){ throw new IllegalArgumentException();}
+                edges = neighbors.entrySet().iterator();
+            }
+
+            @Override
+            public boolean next() {
+                if(!edges.hasNext()){
+                    return false;
+                }
+                Map.Entry<V,Double> edge = edges.next();
+                current = (Integer) edge.getKey();
+                weight = edge.getValue();
+                return true;
+            }
+
+            @Override
+            public int vertex() {
+                return current;
+            }
+
+            @Override
+            public double weight() {
+                return weight;
+            }
+        };
+    }
+
     /**
      * Returns a string representation of the graph. The string representation shows all
      * vertices and edges in the graph.
@@ -0,0 +1,59 @@
+package similarity;
+
+/**
+ * A distance between every ordered pair of movies, addressed by vertex index 0...M-1.
+ * Smaller distances mean more similar movies. Implementations must be safe to call from
+ * several threads at once.
+ */
+public interface Distances {
+
+	/**
+	 * Returns the number of vertices
+	 * @return The number of vertices
+	 */
+	public int size();
+
+	/**
+	 * Returns the distance from vertex i to vertex j
+	 * @param i A vertex
+	 * @param j A vertex other than i
+	 * @return The distance from i to j
+	 */
+	public double distance(int i, int j);
+
+	/**
+	 * Computes the distances from vertex i to every other vertex. Implementations can
+	 * override this when a whole row is cheaper than separate pairs.
+	 * @param i A vertex
+	 * @param out Receives the distance to j in out[j]; out[i] is left untouched
+	 */
+	public default void distances(int i, double[] out){
+		for(int j = 0; j < size(); j++){
+			if(i != j){
+				out[j] = distance(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Returns a reader of whole rows for one task, which may keep scratch space from one
+	 * row to the next. The default reads each row through {@link #distances(int, double[])}.
+	 * @return The reader, which must not be shared between threads
+	 */
+	public default Rows rows(){
+		return this::distances;
+	}
+
+	/**
+	 * Reads whole rows of distances with the scratch space of one task
+	 */
+	public interface Rows {
+
+		/**
+		 * Computes the distances from vertex i to every other vertex
+		 * @param i A vertex
+		 * @param out Receives the distance to j in out[j]; out[i] is left untouched
+		 */
+		public void distances(int i, double[] out);
+	}
+}
@@ -0,0 +1,346 @@
+package similarity;
+
+import data.RatingMatrix;
+import graph.ConcurrentGraphBuilder;
+import graph.IntGraph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes item-item similarities over the rating matrix. The per-movie means, per-user
+ * means and the norm of every movie under every {@link Measure} are computed once up front,
+ * so a similarity only needs the dot product over the users who rated both movies.
+ *
+ * Dot products come either from a merge join of two sorted columns or, for a whole row,
+ * from scattering movie i's ratings into a dense per-thread buffer and walking each other
+ * column once. Both compute every requested measure in the same pass.
+ *
+ * Movies are addressed by vertex index 0...M-1, i.e. movie id - 1. The similarity of a
+ * movie without a rating, or with a zero norm, is 0.
+ */
+public class ItemSimilarity {
+	private final RatingMatrix ratings;
+	private final int n;
+	private final double[] movieMeans;
+	private final double[] userMeans;
+	private final double[][] norms;
+	private final int parallelism;
+
+	/**
+	 * Precomputes the means and norms, building graphs on every available core
+	 * @param ratings The rating matrix
+	 */
+	public ItemSimilarity(RatingMatrix ratings){
+		this(ratings, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Precomputes the means and norms
+	 * @param ratings The rating matrix
+	 * @param parallelism The number of worker threads used to build graphs
+	 */
+	public ItemSimilarity(RatingMatrix ratings, int parallelism){
+		if(parallelism < 1){
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		this.ratings = ratings;
+		this.parallelism = parallelism;
+		n = ratings.numMovies();
+		int[] colOffsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		float[] values = ratings.colRatings();
+
+		userMeans = new double[ratings.numUsers()];
+		int[] rowOffsets = ratings.rowOffsets();
+		float[] rowValues = ratings.rowRatings();
+		for(int row = 0; row < userMeans.length; row++){
+			double sum = 0;
+			for(int k = rowOffsets[row]; k < rowOffsets[row + 1]; k++){
+				sum += rowValues[k];
+			}
+			userMeans[row] = sum / Math.max(1, rowOffsets[row + 1] - rowOffsets[row]);
+		}
+
+		movieMeans = new double[n];
+		norms = new double[Measure.values().length][n];
+		for(int i = 0; i < n; i++){
+			double sum = 0;
+			for(int k = colOffsets[i]; k < colOffsets[i + 1]; k++){
+				sum += values[k];
+			}
+			movieMeans[i] = sum / Math.max(1, colOffsets[i + 1] - colOffsets[i]);
+			for(Measure m : Measure.values()){
+				double squares = 0;
+				for(int k = colOffsets[i]; k < colOffsets[i + 1]; k++){
+					double v = centered(m, i, raters[k], values[k]);
+					squares += v * v;
+				}
+				norms[m.ordinal()][i] = Math.sqrt(squares);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of movies
+	 */
+	public int size(){
+		return n;
+	}
+
+	/**
+	 * Returns the mean rating of a movie
+	 */
+	public double movieMean(int i){
+		return movieMeans[i];
+	}
+
+	/**
+	 * Returns the mean rating given by the user in a row of the rating matrix
+	 */
+	public double userMean(int row){
+		return userMeans[row];
+	}
+
+	/**
+	 * Returns the norm of a movie's centered rating vector under a measure
+	 */
+	public double norm(Measure measure, int i){
+		return norms[measure.ordinal()][i];
+	}
+
+	/**
+	 * Computes one similarity
+	 * @param measure The similarity measure
+	 * @param i A movie
+	 * @param j A movie
+	 * @return The similarity in [-1, 1]
+	 */
+	public double similarity(Measure measure, int i, int j){
+		return similarities(i, j, measure)[0];
+	}
+
+	/**
+	 * Computes several similarities of one pair with a single merge join of the two columns
+	 * @param i A movie
+	 * @param j A movie
+	 * @param measures The similarity measures
+	 * @return The similarities, in the order of the measures
+	 */
+	public double[] similarities(int i, int j, Measure... measures){
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		float[] values = ratings.colRatings();
+		double[] dots = new double[measures.length];
+		int a = offsets[i], aEnd = offsets[i + 1];
+		int b = offsets[j], bEnd = offsets[j + 1];
+		while(a < aEnd && b < bEnd){
+			if(raters[a] < raters[b]){
+				a++;
+			}
+			else if(raters[a] > raters[b]){
+				b++;
+			}
+			else{
+				for(int m = 0; m < measures.length; m++){
+					dots[m] += centered(measures[m], i, raters[a], values[a]) * centered(measures[m], j, raters[b], values[b]);
+				}
+				a++;
+				b++;
+			}
+		}
+		for(int m = 0; m < measures.length; m++){
+			dots[m] = normalize(measures[m], i, j, dots[m]);
+		}
+		return dots;
+	}
+
+	/**
+	 * Computes the similarities from movie i to every movie under several measures in one
+	 * pass over the other columns
+	 * @param i A movie
+	 * @param measures The similarity measures
+	 * @param out Receives the similarity to movie j under measures[m] in out[m][j];
+	 *            out[m][i] is left untouched
+	 */
+	public void similarityRow(int i, Measure[] measures, double[][] out){
+		similarityRow(i, measures, out, newBuffer());
+	}
+
+	/**
+	 * Computes a row of similarities as above with a scratch row of the caller's
+	 * @param buffer A scratch row from {@link #newBuffer}, all NaN on entry and exit
+	 */
+	private void similarityRow(int i, Measure[] measures, double[][] out, float[] buffer){
+		int[] offsets = ratings.colOffsets();
+		int[] raters = ratings.colUsers();
+		float[] values = ratings.colRatings();
+		for(int k = offsets[i]; k < offsets[i + 1]; k++){
+			buffer[raters[k]] = values[k];
+		}
+		double[] dots = new double[measures.length];
+		for(int j = 0; j < n; j++){
+			if(j == i){
+				continue;
+			}
+			Arrays.fill(dots, 0);
+			for(int k = offsets[j]; k < offsets[j + 1]; k++){
+				int row = raters[k];
+				float r = buffer[row];
+				if(r == r){ // not NaN, so the user rated movie i
+					for(int m = 0; m < measures.length; m++){
+						dots[m] += centered(measures[m], i, row, r) * centered(measures[m], j, row, values[k]);
+					}
+				}
+			}
+			for(int m = 0; m < measures.length; m++){
+				out[m][j] = normalize(measures[m], i, j, dots[m]);
+			}
+		}
+		for(int k = offsets[i]; k < offsets[i + 1]; k++){
+			buffer[raters[k]] = Float.NaN;
+		}
+	}
+
+	/**
+	 * Returns the distances 1 - similarity under a measure, so that any distance-based
+	 * builder such as analyzer.KnnGraphBuilder can be driven by it
+	 * @param measure The similarity measure
+	 * @return The distances, in [0, 2]
+	 */
+	public Distances distances(Measure measure){
+		Measure[] measures = {measure};
+		return new Distances(){
+			@Override
+			public int size(){
+				return n;
+			}
+
+			@Override
+			public double distance(int i, int j){
+				return 1 - similarity(measure, i, j);
+			}
+
+			@Override
+			public void distances(int i, double[] out){
+				rows().distances(i, out);
+			}
+
+			@Override
+			public Rows rows(){
+				float[] buffer = newBuffer();
+				double[][] row = new double[1][];
+				return (i, out) -> {
+					row[0] = out;
+					similarityRow(i, measures, row, buffer);
+					for(int j = 0; j < n; j++){
+						if(j != i){
+							out[j] = 1 - out[j];
+						}
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Constructs a graph in which movies u and v are adjacent if their similarity is at
+	 * least the threshold. Edges are added in both directions. Rows are computed in parallel
+	 * and each worker adds the edges from its rows to later movies as it finds them.
+	 * @param measure The similarity measure
+	 * @param threshold The minimum similarity
+	 * @return returns a graph of movies
+	 */
+	public IntGraph graph(Measure measure, double threshold){
+		ConcurrentGraphBuilder edges = new ConcurrentGraphBuilder(n, false);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try{
+			int grain = Math.max(1, n / (parallelism * 8));
+			pool.invoke(new GraphRowTask(measure, threshold, edges, 0, n, grain));
+		}
+		finally{
+			pool.shutdown();
+		}
+		return edges.build();
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	/**
+	 * Returns a scratch row of numUsers floats for similarityRow, all NaN. Every task has its
+	 * own, so none outlives the task in the threads of a shared pool.
+	 */
+	private float[] newBuffer(){
+		float[] buffer = new float[ratings.numUsers()];
+		Arrays.fill(buffer, Float.NaN);
+		return buffer;
+	}
+
+	/**
+	 * Returns the rating the user in the given row gave movie i, centered for the measure
+	 */
+	private double centered(Measure measure, int i, int row, float rating){
+		switch(measure){
+			case PEARSON:
+				return rating - movieMeans[i];
+			case ADJUSTED_COSINE:
+				return rating - userMeans[row];
+			default:
+				return rating;
+		}
+	}
+
+	/**
+	 * Divides a dot product by the norms of both movies
+	 */
+	private double normalize(Measure measure, int i, int j, double dot){
+		double denominator = norms[measure.ordinal()][i] * norms[measure.ordinal()][j];
+		return denominator == 0 ? 0 : dot / denominator;
+	}
+
+	/**
+	 * Adds the edges of a range of rows
+	 */
+	private class GraphRowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Measure[] measures;
+		private final double threshold;
+		private final ConcurrentGraphBuilder edges;
+		private final int from, to, grain;
+
+		GraphRowTask(Measure measure, double threshold, ConcurrentGraphBuilder edges, int from, int to, int grain){
+			this.measures = new Measure[]{measure};
+			this.threshold = threshold;
+			this.edges = edges;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from > grain){
+				int mid = (from + to) >>> 1;
+				invokeAll(new GraphRowTask(measures[0], threshold, edges, from, mid, grain),
+						new GraphRowTask(measures[0], threshold, edges, mid, to, grain));
+				return;
+			}
+			double[][] row = new double[1][n];
+			float[] buffer = newBuffer();
+			ConcurrentGraphBuilder.Sink sink = edges.newSink();
+			for(int i = from; i < to; i++){
+				similarityRow(i, measures, row, buffer);
+				for(int j = i + 1; j < n; j++){
+					if(row[0][j] >= threshold){
+						sink.addEdge(i, j);
+						sink.addEdge(j, i);
+					}
+				}
+			}
+		}
+	}
+}
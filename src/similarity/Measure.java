@@ -0,0 +1,15 @@
+package similarity;
+
+/**
+ * The item-item similarity measures supported by {@link ItemSimilarity}. Each measure is a
+ * cosine between two movies' rating vectors after a different centering; users who did
+ * not rate a movie contribute 0 after centering.
+ */
+public enum Measure {
+	/** The cosine of the raw rating vectors */
+	COSINE,
+	/** The cosine of the rating vectors centered on each movie's mean rating */
+	PEARSON,
+	/** The cosine of the rating vectors centered on each user's mean rating */
+	ADJUSTED_COSINE
+}
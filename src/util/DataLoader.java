@@ -1,10 +1,12 @@
 package util;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
@@ -14,6 +16,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import data.Movie;
+import data.RatingMatrix;
 import data.Reviewer;
 
 
@@ -32,6 +35,9 @@ public class DataLoader {
 	private Map<Integer, Movie> movies;
 	private Map<Integer, Reviewer> reviewers;	
 	private Map<Integer, Integer> renumber;
+	private RatingMatrix.Builder ratingsBuilder;
+	private RatingMatrix ratings;
+	private long checksum;
 
 	/**
 	 * Constructor 
@@ -40,6 +46,7 @@ public class DataLoader {
 		reviewers = new HashMap<>();
 		movies = new HashMap<>();
 		renumber = new HashMap<>();
+		ratingsBuilder = new RatingMatrix.Builder();
 	}
 
 	/**
@@ -51,6 +58,52 @@ public class DataLoader {
 		// These files *must* be read in this order
 		readMovieTitlesFile(movieFilename);		
 		readRatings(reviewFilename);
+		finishRatings();
+	}
+
+	/**
+	 * Loads the movie title and ratings data, parsing the ratings file in parallel
+	 * chunks. The resulting movies and reviewers are identical to those built by
+	 * {@link #loadData(String, String)}.
+	 * @param movieFilename The filename for the movie titles file
+	 * @param reviewFilename The filename for the ratings file
+	 */
+	public void loadDataParallel(String movieFilename, String reviewFilename){
+		readMovieTitlesFile(movieFilename);
+		readRatingsParallel(reviewFilename);
+		finishRatings();
+	}
+
+	/**
+	 * Loads the movie title and ratings data from a binary snapshot. If the snapshot is
+	 * missing, from an older version or was built from different source files, the CSV
+	 * files are parsed instead and the snapshot is rebuilt for the next run.
+	 * @param movieFilename The filename for the movie titles file
+	 * @param reviewFilename The filename for the ratings file
+	 * @param snapshotFilename The filename for the binary snapshot
+	 */
+	public void loadData(String movieFilename, String reviewFilename, String snapshotFilename){
+		try{
+			checksum = Snapshot.checksum(movieFilename, reviewFilename);
+		}
+		catch(IOException e){
+			System.out.println(e);
+			loadDataParallel(movieFilename, reviewFilename);
+			return;
+		}
+
+		Snapshot snapshot = Snapshot.read(snapshotFilename, checksum);
+		if(snapshot != null) {
+			readSnapshot(snapshot);
+			return;
+		}
+		loadDataParallel(movieFilename, reviewFilename);
+		try{
+			toSnapshot().write(snapshotFilename, checksum);
+		}
+		catch(IOException e){
+			System.out.println(e);
+		}
 	}
 
 
@@ -88,6 +141,21 @@ public class DataLoader {
 		return movies;
 	}
 
+	/**
+	 * Returns the rating matrix that backs the movies and reviewers
+	 */
+	public RatingMatrix getRatingMatrix(){
+		return ratings;
+	}
+
+	/**
+	 * Returns the checksum of the source files computed by the snapshot load, or 0 if
+	 * the data was not loaded through a snapshot
+	 */
+	public long getChecksum(){
+		return checksum;
+	}
+
 
 
 	/**************************************************************
@@ -115,25 +183,14 @@ public class DataLoader {
 					rating = Double.parseDouble(fields[2]);					
 				}
 				catch(NumberFormatException e){
+					// Skip the malformed line, like the parallel parser
 					System.out.println(line);
 					System.out.println(e);
+					line = input.readLine();
+					continue;
 				}
 
-				// Only care about the movies that were in our movie title file
-				if(renumber.containsKey(movieId)) {
-					movieId = renumber.get(movieId);
-					// A new reviewer
-					if(!reviewers.containsKey(userId)) {
-						Reviewer r = new Reviewer(userId);
-						r.addMovie(movieId, rating);
-						reviewers.put(userId, r);					
-					}				
-					// An existing reviewer
-					else {
-						reviewers.get(userId).addMovie(movieId, rating);
-					}
-					movies.get(movieId).addRating(userId, rating);
-				}
+				addRating(userId, movieId, rating);
 				line = input.readLine();
 			}
 			input.close();
@@ -144,6 +201,118 @@ public class DataLoader {
 		}
 	}
 
+	/**
+	 * Reads the ratings data with the parallel memory-mapped parser and merges
+	 * the chunks in file order
+	 */
+	private void readRatingsParallel(String filename){
+		try{
+			// A flat lookup table avoids boxing every movie id during the merge
+			int maxId = 0;
+			for(int movieId : renumber.keySet()) {
+				maxId = Math.max(maxId, movieId);
+			}
+			int[] table = new int[maxId + 1];
+			for(Map.Entry<Integer, Integer> entry : renumber.entrySet()) {
+				if(entry.getKey() >= 0) {
+					table[entry.getKey()] = entry.getValue();
+				}
+			}
+			for(RatingsParser.Chunk chunk : RatingsParser.parse(filename)) {
+				for(int i = 0; i < chunk.size; i++) {
+					int movieId = chunk.movies[i];
+					// Only care about the movies that were in our movie title file
+					if(movieId <= maxId && table[movieId] > 0) {
+						recordRating(chunk.users[i], table[movieId], chunk.ratings[i]);
+					}
+				}
+			}
+		}
+		catch(IOException e){
+			System.out.println(System.getProperty("user.dir"));
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Records a single rating for both the reviewer and the movie
+	 */
+	private void addRating(int userId, int movieId, double rating){
+		// Only care about the movies that were in our movie title file; -1 marks a
+		// malformed line of it
+		if(movieId >= 0 && renumber.containsKey(movieId)) {
+			recordRating(userId, renumber.get(movieId), rating);
+		}
+	}
+
+	/**
+	 * Records a single rating for an already renumbered movie
+	 */
+	private void recordRating(int userId, int movieId, double rating){
+		ratingsBuilder.add(userId, movieId, rating);
+	}
+
+	/**
+	 * Builds the rating matrix from the recorded ratings and creates the
+	 * reviewers and movie ratings as views over it
+	 */
+	private void finishRatings(){
+		ratings = ratingsBuilder.build(movies.size());
+		ratingsBuilder = null;
+		ratings.attach(movies);
+		reviewers = ratings.reviewers();
+	}
+
+	/**
+	 * Rebuilds the movies and reviewers from a snapshot
+	 */
+	private void readSnapshot(Snapshot snapshot){
+		for(int i = 0; i < snapshot.titles.length; i++) {
+			int id = i + 1;
+			renumber.put(snapshot.originalIds[i], id);
+			Movie m = new Movie(id, snapshot.years[i], snapshot.titles[i]);
+			for(String genre : snapshot.genres[i]) {
+				m.addGenre(genre);
+			}
+			movies.put(id, m);
+		}
+		for(int i = 0; i < snapshot.users.length; i++) {
+			recordRating(snapshot.users[i], snapshot.movies[i], snapshot.ratings[i]);
+		}
+		finishRatings();
+	}
+
+	/**
+	 * Captures the loaded movies and reviewers as a snapshot
+	 */
+	private Snapshot toSnapshot(){
+		Snapshot snapshot = new Snapshot();
+		int numMovies = movies.size();
+		snapshot.originalIds = new int[numMovies];
+		snapshot.years = new int[numMovies];
+		snapshot.titles = new String[numMovies];
+		snapshot.genres = new String[numMovies][];
+		for(Map.Entry<Integer, Integer> entry : renumber.entrySet()) {
+			snapshot.originalIds[entry.getValue() - 1] = entry.getKey();
+		}
+
+		for(int id = 1; id <= numMovies; id++) {
+			Movie m = movies.get(id);
+			snapshot.years[id - 1] = m.getYear();
+			snapshot.titles[id - 1] = m.getTitle();
+			snapshot.genres[id - 1] = m.getGenres().toArray(new String[0]);
+		}
+
+		int[] offsets = ratings.rowOffsets();
+		snapshot.users = new int[ratings.numRatings()];
+		for(int row = 0; row < ratings.numUsers(); row++) {
+			Arrays.fill(snapshot.users, offsets[row], offsets[row + 1], ratings.userId(row));
+		}
+		snapshot.movies = ratings.rowMovies();
+		snapshot.ratings = ratings.rowRatings();
+		return snapshot;
+	}
+
 	/**
 	 * Reads and parses the data from movie_titles.txt
 	 */
@@ -207,12 +376,64 @@ public class DataLoader {
 
 
 	public static void main(String[] args){
-		DataLoader p = new DataLoader();
-		p.loadData("./src/ml-latest-small/movies_top_1000.csv", "./src/ml-latest-small/ratings.csv");
+		String movieFile = "./src/ml-latest-small/movies.csv";
+		String ratingsFile = "./src/ml-latest-small/ratings.csv";
+		if(args.length == 2){
+			movieFile = args[0];
+			ratingsFile = args[1];
+		}
+
+		// Compare the sequential reader against the parallel memory-mapped parser.
+		// The first rounds only warm up the JIT.
+		long sequential = 0, parallel = 0;
+		DataLoader p = null, q = null;
+		for(int round = 0; round < 5; round++){
+			long start = System.nanoTime();
+			p = new DataLoader();
+			p.loadData(movieFile, ratingsFile);
+			long mid = System.nanoTime();
+			q = new DataLoader();
+			q.loadDataParallel(movieFile, ratingsFile);
+			long end = System.nanoTime();
+			if(round >= 2){
+				sequential += mid - start;
+				parallel += end - mid;
+			}
+		}
+		// Build the snapshot once, then time loading it back
+		String snapshotFile = ratingsFile + ".snapshot";
+		new File(snapshotFile).delete();
+		new DataLoader().loadData(movieFile, ratingsFile, snapshotFile);
+		long snapshot = 0;
+		DataLoader r = null;
+		for(int round = 0; round < 5; round++){
+			long start = System.nanoTime();
+			r = new DataLoader();
+			r.loadData(movieFile, ratingsFile, snapshotFile);
+			if(round >= 2){
+				snapshot += System.nanoTime() - start;
+			}
+		}
+
+		boolean same = p.getMovies().size() == q.getMovies().size() && p.getReviewers().size() == q.getReviewers().size();
+		for(Map.Entry<Integer, Reviewer> entry : p.getReviewers().entrySet()){
+			Reviewer other = q.getReviewers().get(entry.getKey());
+			Reviewer fromSnapshot = r.getReviewers().get(entry.getKey());
+			same &= other != null && entry.getValue().getRatings().equals(other.getRatings());
+			same &= fromSnapshot != null && entry.getValue().getRatings().equals(fromSnapshot.getRatings());
+		}
+		for(Map.Entry<Integer, Movie> entry : p.getMovies().entrySet()){
+			Movie fromSnapshot = r.getMovies().get(entry.getKey());
+			same &= entry.getValue().getTitle().equals(fromSnapshot.getTitle()) && entry.getValue().getYear() == fromSnapshot.getYear();
+			same &= entry.getValue().getGenres().equals(fromSnapshot.getGenres());
+		}
 		System.out.println("Number of movies: " + p.getMovies().size());
 		System.out.println("Number of reviewers: " + p.getReviewers().size());
-		p.printMovieList();
-		p.printReviewerList();
+		System.out.println("Sequential load: " + (sequential / 3 / 1000000) + " ms");
+		System.out.println("Parallel load: " + (parallel / 3 / 1000000) + " ms");
+		System.out.println("Snapshot load: " + (snapshot / 3 / 1000000) + " ms");
+		System.out.println("Speedup: " + ((double)sequential / parallel) + "x parallel, "
+				+ ((double)sequential / snapshot) + "x snapshot, identical data: " + same);
 	}
 
 }
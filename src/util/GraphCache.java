@@ -0,0 +1,382 @@
+package util;
+
+import graph.BitMatrixGraph;
+import graph.DenseWeightedGraph;
+import graph.Graph;
+import graph.GraphIfc;
+import graph.IntGraph;
+import graph.MappedGraph;
+import graph.WeightedGraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A directory of built graphs, so that a later run with the same inputs can read a graph
+ * back instead of rebuilding it. Each graph is stored in its own file named after a key
+ * derived from the checksum of the source files, the graph option and its parameters.
+ * When the files in the directory exceed the size cap, the least recently used graphs are
+ * deleted; a graph larger than the whole cap is not cached. A graph too large for the heap
+ * is instead built by its builder straight into a mapped file of the directory, see
+ * {@link #mappedFile}.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int magic, int version, int weighted (0 or 1), int V, long E
+ *   V vertex ids in increasing order, V+1 long adjacency offsets, E neighbour ids, and if
+ *   weighted E double weights
+ * </pre>
+ * The neighbours of the i-th vertex are at [offsets[i], offsets[i+1]) in increasing order,
+ * so a graph on the vertices 0...V-1 is read back as an {@link IntGraph} over the same
+ * arrays, or as a bit or weight matrix if it is dense, like the builders would return.
+ */
+public class GraphCache {
+	public static final int MAGIC = 0x4D4C4743; // "MLGC"
+	public static final int VERSION = 2;
+	public static final long DEFAULT_MAX_BYTES = 256L << 20;
+	private static final String SUFFIX = ".graph";
+	private static final String MAPPED_SUFFIX = ".mapped";
+	private static final int HEADER_BYTES = 24; // magic, version, weighted flag, V and E
+
+	private final File directory;
+	private final long maxBytes;
+
+	/**
+	 * Creates a cache in the given directory, which is created on the first store
+	 * @param directory The cache directory
+	 * @param maxBytes The total size of the cached graphs above which the oldest are evicted
+	 */
+	public GraphCache(String directory, long maxBytes){
+		this.directory = new File(directory);
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Derives the key of a graph
+	 * @param checksum The checksum of the source files, see {@link Snapshot#checksum}
+	 * @param option The menu option that builds the graph
+	 * @param parameters The parameters of the builder, e.g. "threshold=12"
+	 * @return A key that is safe to use as a file name
+	 */
+	public static String key(long checksum, int option, String parameters){
+		long hash = checksum;
+		hash = Hashing.mix(hash ^ option);
+		for(int i = 0; i < parameters.length(); i++){
+			hash = Hashing.mix(hash * 31 + parameters.charAt(i));
+		}
+		return String.format("option%d-%016x", option, hash);
+	}
+
+	/**
+	 * Reads a cached graph through a memory map
+	 * @param key The key of the graph
+	 * @return The graph, or null if it is not cached or unreadable
+	 */
+	public GraphIfc<Integer> load(String key){
+		File f = new File(directory, key + SUFFIX);
+		if(!f.isFile()){
+			return null;
+		}
+		try(RandomAccessFile file = new RandomAccessFile(f, "r");
+			FileChannel channel = file.getChannel()) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != VERSION){
+				return null;
+			}
+			boolean weighted = buf.getInt() != 0;
+			int numVertices = buf.getInt();
+			long numEdges = buf.getLong();
+			if(numEdges > Integer.MAX_VALUE - 8){
+				System.out.println("Cached graph " + f + " has too many edges to load: " + numEdges);
+				return null;
+			}
+			int m = (int)numEdges;
+			int[] ids = new int[numVertices];
+			buf.asIntBuffer().get(ids);
+			buf.position(buf.position() + 4 * numVertices);
+			long[] wide = new long[numVertices + 1];
+			buf.asLongBuffer().get(wide);
+			buf.position(buf.position() + 8 * (numVertices + 1));
+			int[] offsets = new int[numVertices + 1];
+			for(int i = 0; i <= numVertices; i++){
+				if(wide[i] < 0 || wide[i] > m){
+					throw new IllegalArgumentException("Offset out of range: " + wide[i]);
+				}
+				offsets[i] = (int)wide[i];
+			}
+			int[] targets = new int[m];
+			buf.asIntBuffer().get(targets);
+			buf.position(buf.position() + 4 * m);
+			double[] weights = null;
+			if(weighted){
+				weights = new double[m];
+				buf.asDoubleBuffer().get(weights);
+			}
+			GraphIfc<Integer> g = toGraph(ids, offsets, targets, weights);
+			// Mark the entry as recently used so that eviction keeps it
+			f.setLastModified(System.currentTimeMillis());
+			return g;
+		}
+		catch(IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException e){
+			System.out.println("Ignoring unreadable cached graph " + f + ": " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a graph to the cache and evicts the oldest graphs if the cache is too large.
+	 * Failures are reported and otherwise ignored, since the cache is only an optimization.
+	 * @param key The key of the graph
+	 * @param g The graph
+	 */
+	public void store(String key, GraphIfc<Integer> g){
+		File target = new File(directory, key + SUFFIX);
+		File tmp = new File(directory, key + SUFFIX + ".tmp");
+		long bytes = entryBytes(g.numVertices(), numEdges(g), isWeighted(g));
+		if(bytes > maxBytes){
+			System.out.println("Not caching a graph of " + bytes + " bytes, which exceeds the cache size " + maxBytes);
+			return;
+		}
+		try{
+			if(!directory.isDirectory() && !directory.mkdirs()){
+				throw new IOException("Could not create cache directory " + directory);
+			}
+			write(tmp, g);
+			// Only replace an existing entry once the new one is complete
+			if(!tmp.renameTo(target)){
+				target.delete();
+				if(!tmp.renameTo(target)){
+					throw new IOException("Could not write cached graph " + target);
+				}
+			}
+			evict(target);
+		}
+		catch(IOException e){
+			tmp.delete();
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Reopens a graph that was too large to cache and was built in its own mapped file
+	 * @param key The key of the graph
+	 * @return The graph, or null if it was not built or its file is unreadable
+	 */
+	public MappedGraph loadMapped(String key){
+		File f = new File(directory, key + MAPPED_SUFFIX);
+		if(!f.isFile()){
+			return null;
+		}
+		try{
+			return MappedGraph.open(f.getPath());
+		}
+		catch(IOException e){
+			System.out.println(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the file in which to build a graph too large to cache, where {@link #loadMapped}
+	 * finds it again. Such files do not count towards the size cap, but as each may be as large
+	 * as the heap, those of other keys are deleted first.
+	 * @param key The key of the graph
+	 * @return The path of the file
+	 * @throws IOException if the cache directory cannot be created
+	 */
+	public String mappedFile(String key) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()){
+			throw new IOException("Could not create cache directory " + directory);
+		}
+		File target = new File(directory, key + MAPPED_SUFFIX);
+		File[] stale = directory.listFiles((dir, name) -> name.endsWith(MAPPED_SUFFIX));
+		if(stale != null){
+			for(File f : stale){
+				if(!f.equals(target)){
+					f.delete();
+				}
+			}
+		}
+		return target.getPath();
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	/**
+	 * Builds the graph that a cached entry describes
+	 */
+	private static GraphIfc<Integer> toGraph(int[] ids, int[] offsets, int[] targets, double[] weights){
+		int n = ids.length;
+		double density = n < 2 ? 0 : (double)targets.length / ((double)n * (n - 1));
+		if(!isRange(ids)){
+			// Arbitrary vertex ids need a hashed graph
+			GraphIfc<Integer> g = weights == null ? new Graph<Integer>() : new WeightedGraph<Integer>();
+			for(int id : ids){
+				g.addVertex(id);
+			}
+			for(int i = 0; i < n; i++){
+				for(int e = offsets[i]; e < offsets[i + 1]; e++){
+					if(weights == null){
+						g.addEdge(ids[i], ids[targets[e]]);
+					}
+					else{
+						((WeightedGraph<Integer>)g).addEdge(ids[i], ids[targets[e]], weights[e]);
+					}
+				}
+			}
+			return g;
+		}
+		if(weights != null && density > DenseWeightedGraph.DENSITY_THRESHOLD && (long)n * n <= Integer.MAX_VALUE){
+			double[] matrix = new double[n * n];
+			Arrays.fill(matrix, Double.NaN);
+			for(int v = 0; v < n; v++){
+				for(int e = offsets[v]; e < offsets[v + 1]; e++){
+					matrix[v * n + targets[e]] = weights[e];
+				}
+			}
+			return DenseWeightedGraph.fromMatrix(n, matrix);
+		}
+		if(weights == null && density > BitMatrixGraph.DENSITY_THRESHOLD){
+			BitMatrixGraph g = new BitMatrixGraph(n);
+			for(int v = 0; v < n; v++){
+				for(int e = offsets[v]; e < offsets[v + 1]; e++){
+					g.addEdge(v, targets[e]);
+				}
+			}
+			return g;
+		}
+		return IntGraph.fromArrays(n, offsets, targets, weights);
+	}
+
+	/**
+	 * Returns true for every graph but the unweighted ones, which may carry weights other than 1
+	 */
+	private static boolean isWeighted(GraphIfc<Integer> g){
+		return !(g instanceof Graph || g instanceof BitMatrixGraph || (g instanceof IntGraph && !((IntGraph)g).isWeighted()));
+	}
+
+	private static long numEdges(GraphIfc<Integer> g){
+		long numEdges = 0;
+		for(int v : g.getVertices()){
+			numEdges += g.degree(v);
+		}
+		return numEdges;
+	}
+
+	/**
+	 * Returns the size of the file of a graph
+	 */
+	private static long entryBytes(int n, long numEdges, boolean weighted){
+		return HEADER_BYTES + 4L * n + 8L * (n + 1) + (weighted ? 12 : 4) * numEdges;
+	}
+
+	private static void write(File file, GraphIfc<Integer> g) throws IOException {
+		boolean weighted = isWeighted(g);
+		int[] ids = new int[g.numVertices()];
+		int next = 0;
+		for(int v : g.getVertices()){
+			ids[next++] = v;
+		}
+		// Sorted ids and rows let a graph on 0...V-1 be read back as compressed sparse rows
+		Arrays.sort(ids);
+		Map<Integer, Integer> index = null;
+		if(!isRange(ids)){
+			index = new HashMap<>();
+			for(int i = 0; i < ids.length; i++){
+				index.put(ids[i], i);
+			}
+		}
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(weighted ? 1 : 0);
+			out.writeInt(ids.length);
+			out.writeLong(numEdges(g));
+			for(int v : ids){
+				out.writeInt(v);
+			}
+			long offset = 0;
+			out.writeLong(offset);
+			for(int v : ids){
+				offset += g.degree(v);
+				out.writeLong(offset);
+			}
+			for(int v : ids){
+				for(int u : sortedRow(g, v, index)){
+					out.writeInt(u);
+				}
+			}
+			if(weighted){
+				for(int v : ids){
+					for(int u : sortedRow(g, v, index)){
+						out.writeDouble(g.getEdgeWeight(v, index == null ? u : ids[u]));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the positions of the neighbours of v among the sorted ids, in increasing order
+	 */
+	private static int[] sortedRow(GraphIfc<Integer> g, int v, Map<Integer, Integer> index){
+		int[] row = new int[g.degree(v)];
+		int next = 0;
+		for(int u : g.getNeighbors(v)){
+			row[next++] = index == null ? u : index.get(u);
+		}
+		Arrays.sort(row);
+		return row;
+	}
+
+	/**
+	 * Returns true if the ids are a permutation of 0...ids.length-1
+	 */
+	private static boolean isRange(int[] ids){
+		boolean[] seen = new boolean[ids.length];
+		for(int id : ids){
+			if(id < 0 || id >= ids.length || seen[id]){
+				return false;
+			}
+			seen[id] = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the least recently used graphs until the cache fits under the size cap,
+	 * never the one just stored
+	 */
+	private void evict(File keep){
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		if(files == null){
+			return;
+		}
+		long total = 0;
+		for(File f : files){
+			total += f.length();
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for(int i = 0; i < files.length && total > maxBytes; i++){
+			if(files[i].equals(keep)){
+				continue;
+			}
+			total -= files[i].length();
+			files[i].delete();
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package util;
+
+/**
+ * Hash functions shared by the sketches, caches and estimators
+ */
+public class Hashing {
+
+	/**
+	 * The SplitMix64 finalizer, a cheap well-mixed 64-bit hash: every input bit affects
+	 * every output bit
+	 *
+	 * @param z The value to hash
+	 * @return The hash
+	 */
+	public static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,251 @@
+package util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A parallel parser for the MovieLens ratings file. The file is split into newline-aligned
+ * chunks, each chunk is memory-mapped and its digits are parsed straight from the bytes on
+ * a fork-join pool. Each chunk produces primitive (user, movie, rating) columns that are
+ * returned in file order so callers can merge them exactly as the sequential reader would.
+ *
+ * Only the first three columns of each line are parsed; the timestamp is skipped.
+ */
+public class RatingsParser {
+	// Chunks smaller than this are not worth a task of their own
+	private static final long MIN_CHUNK_BYTES = 1 << 20;
+	// Longer ids could overflow an int; a rating mantissa is held to 15 digits in a long
+	private static final int MAX_ID_DIGITS = 9;
+	private static final int MAX_RATING_DIGITS = 15;
+
+	private static final double[] POW10 = {1, 10, 100, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+			1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+	/**
+	 * The ratings parsed from one chunk of the file, stored as parallel primitive arrays
+	 */
+	public static class Chunk {
+		public int[] users;
+		public int[] movies;
+		public double[] ratings;
+		public int size;
+
+		Chunk(int capacity) {
+			users = new int[capacity];
+			movies = new int[capacity];
+			ratings = new double[capacity];
+		}
+
+		private void add(int user, int movie, double rating) {
+			if(size == users.length) {
+				int capacity = Math.max(16, size * 2);
+				users = Arrays.copyOf(users, capacity);
+				movies = Arrays.copyOf(movies, capacity);
+				ratings = Arrays.copyOf(ratings, capacity);
+			}
+			users[size] = user;
+			movies[size] = movie;
+			ratings[size] = rating;
+			size++;
+		}
+	}
+
+	/**
+	 * Parses the ratings file using the common fork-join pool
+	 * @param filename The ratings file, including its header line
+	 * @return The parsed chunks in file order
+	 */
+	public static Chunk[] parse(String filename) throws IOException {
+		return parse(filename, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Parses the ratings file on the given pool
+	 * @param filename The ratings file, including its header line
+	 * @param pool The pool that parses the chunks
+	 * @return The parsed chunks in file order
+	 */
+	public static Chunk[] parse(String filename, ForkJoinPool pool) throws IOException {
+		try(RandomAccessFile file = new RandomAccessFile(filename, "r");
+			FileChannel channel = file.getChannel()) {
+			long[] bounds = chunkBounds(channel, pool.getParallelism() * 4);
+			Chunk[] chunks = new Chunk[bounds.length - 1];
+			List<ParseTask> tasks = new ArrayList<>();
+			for(int i = 0; i < chunks.length; i++) {
+				tasks.add(new ParseTask(channel, bounds[i], bounds[i+1], chunks, i));
+			}
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+			return chunks;
+		}
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	/**
+	 * Splits the file into roughly equal ranges that each start at the beginning of a line
+	 * and end just after a newline. The header line is excluded from the first range.
+	 */
+	private static long[] chunkBounds(FileChannel channel, int numChunks) throws IOException {
+		long size = channel.size();
+		long first = nextLineStart(channel, 0);
+		long chunkBytes = Math.max(MIN_CHUNK_BYTES, (size - first) / Math.max(1, numChunks));
+
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(first);
+		long pos = first + chunkBytes;
+		while(pos < size) {
+			long start = nextLineStart(channel, pos);
+			if(start >= size) {
+				break;
+			}
+			bounds.add(start);
+			pos = start + chunkBytes;
+		}
+		bounds.add(size);
+
+		long[] result = new long[bounds.size()];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the offset just past the first newline at or after pos, or the file size
+	 */
+	private static long nextLineStart(FileChannel channel, long pos) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(256);
+		long size = channel.size();
+		while(pos < size) {
+			buf.clear();
+			int read = channel.read(buf, pos);
+			if(read <= 0) {
+				break;
+			}
+			for(int i = 0; i < read; i++) {
+				if(buf.get(i) == '\n') {
+					return pos + i + 1;
+				}
+			}
+			pos += read;
+		}
+		return size;
+	}
+
+	/**
+	 * Parses a single newline-aligned range of the file
+	 */
+	private static class ParseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final FileChannel channel;
+		private final long start, end;
+		private final Chunk[] out;
+		private final int index;
+
+		ParseTask(FileChannel channel, long start, long end, Chunk[] out, int index) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.out = out;
+			this.index = index;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				// A rating line is at least ~20 bytes long, so this rarely needs to grow
+				Chunk chunk = new Chunk((int)((end - start) / 20) + 16);
+				parseRange(buf, chunk);
+				out[index] = chunk;
+			}
+			catch(IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Parses "userId,movieId,rating,timestamp" lines from the buffer. Malformed lines are
+	 * reported and skipped, just like the sequential reader.
+	 */
+	private static void parseRange(ByteBuffer buf, Chunk chunk) {
+		int limit = buf.limit();
+		int pos = 0;
+		while(pos < limit) {
+			int lineStart = pos;
+			int user = 0, movie = 0, field = 0, digits = 0, ratingDigits = 0;
+			long mantissa = 0;
+			int scale = -1;
+			boolean ok = true;
+			byte b = 0;
+			while(pos < limit && (b = buf.get(pos)) != '\n') {
+				pos++;
+				if(field >= 3 || b == '\r') {
+					continue; // the timestamp is not needed
+				}
+				if(b == ',') {
+					ok &= digits > 0;
+					field++;
+					digits = 0;
+				}
+				else if(b >= '0' && b <= '9') {
+					digits++;
+					// A longer id is malformed rather than wrapped into a valid-looking one
+					ok &= field >= 2 || digits <= MAX_ID_DIGITS;
+					if(field == 0) {
+						user = user * 10 + (b - '0');
+					}
+					else if(field == 1) {
+						movie = movie * 10 + (b - '0');
+					}
+					else {
+						mantissa = mantissa * 10 + (b - '0');
+						ratingDigits++;
+						if(scale >= 0) {
+							scale++;
+						}
+					}
+				}
+				else if(b == '.' && field == 2 && scale < 0) {
+					scale = 0;
+				}
+				else {
+					ok = false;
+				}
+			}
+			pos++; // skip the newline
+			if(pos - lineStart <= 1) {
+				continue; // blank line
+			}
+			if(!ok || field < 2 || ratingDigits == 0 || ratingDigits > MAX_RATING_DIGITS || scale >= POW10.length) {
+				byte[] bytes = new byte[Math.min(pos, limit) - lineStart];
+				for(int i = 0; i < bytes.length; i++) {
+					bytes[i] = buf.get(lineStart + i);
+				}
+				System.out.println(new String(bytes).trim());
+				continue;
+			}
+			// Both operands are exact doubles, so the quotient is correctly rounded and
+			// matches Double.parseDouble
+			double rating = scale <= 0 ? mantissa : mantissa / POW10[scale];
+			chunk.add(user, movie, rating);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary snapshot of the loaded MovieLens data. The snapshot holds the movies
+ * (already renumbered, with cleaned titles, years and genres) and every rating as a
+ * (user, movie, rating) triple, so a later run can skip the CSV parsing and title cleanup.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int magic, int version, long checksum of the source files
+ *   int M, then for each movie 1..M: int originalId, int year, str title, int G, G * str genre
+ *   int R, then R user ids, R movie ids and R float ratings as three columns
+ * </pre>
+ * where str is an int byte length followed by UTF-8 bytes. Ratings are stored as floats,
+ * which is exact for the half-star MovieLens scale.
+ */
+public class Snapshot {
+	public static final int MAGIC = 0x4D4C534E; // "MLSN"
+	public static final int VERSION = 1;
+
+	public int[] originalIds;
+	public int[] years;
+	public String[] titles;
+	public String[][] genres;
+
+	public int[] users;
+	public int[] movies;
+	public float[] ratings;
+
+	/**
+	 * Computes a checksum over the contents of the given files
+	 * @param filenames The source files the snapshot is built from
+	 * @return A checksum that changes whenever any of the files change
+	 */
+	public static long checksum(String... filenames) throws IOException {
+		CRC32 crc = new CRC32();
+		long lengths = 0;
+		for(String filename : filenames) {
+			try(RandomAccessFile file = new RandomAccessFile(filename, "r");
+				FileChannel channel = file.getChannel()) {
+				long size = channel.size();
+				for(long pos = 0; pos < size; pos += Integer.MAX_VALUE) {
+					crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(Integer.MAX_VALUE, size - pos)));
+				}
+				lengths = lengths * 31 + size;
+			}
+		}
+		return (lengths << 32) ^ crc.getValue();
+	}
+
+	/**
+	 * Writes the snapshot to disk
+	 * @param filename The snapshot file
+	 * @param checksum The checksum of the source files
+	 */
+	public void write(String filename, long checksum) throws IOException {
+		File tmp = new File(filename + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(checksum);
+			out.writeInt(titles.length);
+			for(int i = 0; i < titles.length; i++) {
+				out.writeInt(originalIds[i]);
+				out.writeInt(years[i]);
+				writeString(out, titles[i]);
+				out.writeInt(genres[i].length);
+				for(String genre : genres[i]) {
+					writeString(out, genre);
+				}
+			}
+			out.writeInt(users.length);
+			for(int user : users) {
+				out.writeInt(user);
+			}
+			for(int movie : movies) {
+				out.writeInt(movie);
+			}
+			for(float rating : ratings) {
+				out.writeFloat(rating);
+			}
+		}
+		// Only replace an existing snapshot once the new one is complete
+		File target = new File(filename);
+		if(!tmp.renameTo(target)) {
+			target.delete();
+			if(!tmp.renameTo(target)) {
+				throw new IOException("Could not write snapshot " + filename);
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot through a memory map
+	 * @param filename The snapshot file
+	 * @param checksum The checksum of the current source files
+	 * @return The snapshot, or null if it is missing, corrupt, from another version or stale
+	 */
+	public static Snapshot read(String filename, long checksum) {
+		File f = new File(filename);
+		if(!f.isFile()) {
+			return null;
+		}
+		try(RandomAccessFile file = new RandomAccessFile(f, "r");
+			FileChannel channel = file.getChannel()) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buf.remaining() < 16 || buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getLong() != checksum) {
+				return null;
+			}
+			Snapshot s = new Snapshot();
+			int numMovies = buf.getInt();
+			s.originalIds = new int[numMovies];
+			s.years = new int[numMovies];
+			s.titles = new String[numMovies];
+			s.genres = new String[numMovies][];
+			for(int i = 0; i < numMovies; i++) {
+				s.originalIds[i] = buf.getInt();
+				s.years[i] = buf.getInt();
+				s.titles[i] = readString(buf);
+				s.genres[i] = new String[buf.getInt()];
+				for(int j = 0; j < s.genres[i].length; j++) {
+					s.genres[i][j] = readString(buf);
+				}
+			}
+			int numRatings = buf.getInt();
+			s.users = new int[numRatings];
+			s.movies = new int[numRatings];
+			s.ratings = new float[numRatings];
+			buf.asIntBuffer().get(s.users);
+			buf.position(buf.position() + 4 * numRatings);
+			buf.asIntBuffer().get(s.movies);
+			buf.position(buf.position() + 4 * numRatings);
+			buf.asFloatBuffer().get(s.ratings);
+			return s;
+		}
+		catch(IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+			System.out.println("Ignoring unreadable snapshot " + filename + ": " + e);
+			return null;
+		}
+	}
+
+
+	/**************************************************************
+	 * 				Private Helper Methods
+	 **************************************************************/
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(MappedByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}